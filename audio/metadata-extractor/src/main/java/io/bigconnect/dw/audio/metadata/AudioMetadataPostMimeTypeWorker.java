@@ -37,12 +37,15 @@
 package io.bigconnect.dw.audio.metadata;
 
 import com.google.inject.Inject;
-import com.mware.bigconnect.ffmpeg.AVMediaInfo;
+import com.mware.bigconnect.ffmpeg.FFmpegInput;
+import com.mware.bigconnect.ffmpeg.MediaProbeCache;
+import com.mware.bigconnect.ffmpeg.MediaProbeResult;
 import com.mware.core.ingest.dataworker.DataWorkerData;
 import com.mware.core.ingest.dataworker.DataWorkerPrepareData;
 import com.mware.core.ingest.dataworker.PostMimeTypeWorker;
 import com.mware.core.model.Description;
 import com.mware.core.model.Name;
+import com.mware.core.model.properties.BcSchema;
 import com.mware.core.model.properties.MediaBcSchema;
 import com.mware.core.model.properties.types.BcPropertyUpdate;
 import com.mware.core.model.properties.types.DoubleBcProperty;
@@ -53,9 +56,9 @@ import com.mware.core.util.ProcessRunner;
 import com.mware.ge.Authorizations;
 import com.mware.ge.Element;
 import com.mware.ge.Metadata;
+import com.mware.ge.Property;
 import com.mware.ge.Vertex;
 import com.mware.ge.mutation.ExistingElementMutation;
-import net.bramp.ffmpeg.probe.FFmpegProbeResult;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -84,22 +87,24 @@ public class AudioMetadataPostMimeTypeWorker extends PostMimeTypeWorker {
         }
 
         File localFile = getLocalFileForRaw(data.getElement());
-        FFmpegProbeResult audioMetadata = AVMediaInfo.probe(localFile.getAbsolutePath());
+        Property raw = data.getElement().getProperty(BcSchema.RAW.getPropertyName());
+        MediaProbeResult audioMetadata = MediaProbeCache.probe(data.getElement(), raw, FFmpegInput.of(localFile.toPath()));
         ExistingElementMutation<Vertex> m = refresh(data.getElement(), authorizations).prepareMutation();
         List<BcPropertyUpdate> changedProperties = new ArrayList<>();
         Metadata metadata = data.createPropertyMetadata(getUser());
         if (audioMetadata != null) {
             duration.updateProperty(changedProperties, data.getElement(), m, MULTI_VALUE_PROPERTY_KEY,
-                    audioMetadata.format.duration, metadata, data.getVisibility());
+                    audioMetadata.getDuration(), metadata, data.getVisibility());
+            MediaProbeCache.save(m, data.getElement(), raw, audioMetadata, data.getVisibility());
         }
 
         fileSize.updateProperty(changedProperties, data.getElement(), m, MULTI_VALUE_PROPERTY_KEY,
                 FileSizeUtil.getSize(localFile), metadata, data.getVisibility());
 
         MediaBcSchema.MEDIA_AUDIO_FORMAT.updateProperty(changedProperties, data.getElement(), m,
-                AVMediaInfo.getAudioFormat(audioMetadata).name(), metadata, data.getVisibility());
+                audioMetadata.getAudioFormat().name(), metadata, data.getVisibility());
         MediaBcSchema.MEDIA_AUDIO_CODEC.updateProperty(changedProperties, data.getElement(), m,
-                AVMediaInfo.getAudioCodec(audioMetadata).name(), metadata, data.getVisibility());
+                audioMetadata.getAudioCodec().name(), metadata, data.getVisibility());
 
         Element e = m.save(authorizations);
         getGraph().flush();
@@ -69,6 +69,17 @@ public class AVMediaInfo {
         return null;
     }
 
+    public static FFmpegProbeResult probe(FFmpegInput input) {
+        try {
+            FFprobe ffProbe = AVUtils.ffprobe(input.processFunction());
+            return ffProbe.probe(input.getUrl());
+        } catch (IOException e) {
+            LOGGER.error("exception running ffprobe", e);
+        }
+
+        return null;
+    }
+
     public static boolean hasVideoStream(FFmpegProbeResult probeResult) {
         List<FFmpegStream> streams = probeResult.getStreams();
         if (streams != null) {
@@ -95,7 +106,11 @@ public class AVMediaInfo {
         if (!hasVideoStream(probeResult))
             return null;
 
-        switch (probeResult.getFormat().format_name) {
+        return parseVideoFormat(probeResult.getFormat().format_name);
+    }
+
+    static VideoFormat parseVideoFormat(String format_name) {
+        switch (format_name) {
             case "matroska,webm":
                 return VideoFormat.WEBM;
             case "mov,mp4,m4a,3gp,3g2,mj2":
@@ -109,7 +124,11 @@ public class AVMediaInfo {
         if (!hasAudioStream(probeResult))
             return null;
 
-        switch (probeResult.getFormat().format_name) {
+        return parseAudioFormat(probeResult.getFormat().format_name);
+    }
+
+    static AudioFormat parseAudioFormat(String format_name) {
+        switch (format_name) {
             case "matroska,webm":
                 return AudioFormat.WEBM;
             case "ogg":
@@ -171,7 +190,7 @@ public class AVMediaInfo {
         return format != AudioFormat.UNKNOWN && codec != AudioCodec.UNKNOWN;
     }
 
-    private static VideoCodec parseVideoCodec(String codec_name) {
+    static VideoCodec parseVideoCodec(String codec_name) {
         if (StringUtils.isEmpty(codec_name))
             return null;
 
@@ -191,7 +210,7 @@ public class AVMediaInfo {
         }
     }
 
-    private static AudioCodec parseAudioCodec(String codec_name) {
+    static AudioCodec parseAudioCodec(String codec_name) {
         if (StringUtils.isEmpty(codec_name))
             return null;
 
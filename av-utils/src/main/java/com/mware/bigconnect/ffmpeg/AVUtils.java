@@ -38,33 +38,21 @@ package com.mware.bigconnect.ffmpeg;
 
 import com.mware.core.util.BcLogger;
 import com.mware.core.util.BcLoggerFactory;
-import com.mware.ge.collection.Pair;
 import net.bramp.ffmpeg.FFmpeg;
 import net.bramp.ffmpeg.FFmpegExecutor;
 import net.bramp.ffmpeg.FFprobe;
 import net.bramp.ffmpeg.ProcessFunction;
 import net.bramp.ffmpeg.builder.FFmpegBuilder;
 import net.bramp.ffmpeg.builder.FFmpegOutputBuilder;
-import net.bramp.ffmpeg.probe.FFmpegProbeResult;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import static com.google.common.base.Preconditions.checkNotNull;
-import static com.mware.bigconnect.ffmpeg.ArtifactThumbnailRepositoryProps.*;
 
 public class AVUtils {
     private static final BcLogger LOGGER = BcLoggerFactory.getLogger(AVUtils.class);
@@ -74,22 +62,40 @@ public class AVUtils {
         return (!StringUtils.isEmpty(path)) ? new FFprobe(path) : new FFprobe();
     }
 
+    public static FFprobe ffprobe(ProcessFunction runFunction) throws IOException {
+        String path = System.getenv("FFPROBE");
+        return (!StringUtils.isEmpty(path)) ? new FFprobe(path, runFunction) : new FFprobe(runFunction);
+    }
+
     public static FFmpeg ffmpeg() throws IOException {
         String path = System.getenv("FFMPEG");
         return (!StringUtils.isEmpty(path)) ? new FFmpeg(path) : new FFmpeg();
     }
 
+    // for callers that need the ffmpeg process itself, e.g. to read its output
+    public static String ffmpegPath() {
+        String path = System.getenv("FFMPEG");
+        return (!StringUtils.isEmpty(path)) ? path : "ffmpeg";
+    }
+
     public static FFmpeg ffmpeg(ProcessFunction runFunction) throws IOException {
         String path = System.getenv("FFMPEG");
         return (!StringUtils.isEmpty(path)) ? new FFmpeg(path, runFunction) : new FFmpeg(runFunction);
     }
 
     public static byte[] createVideoPosterFrame(Path videoFile) {
-        FFmpegProbeResult probeResult = AVMediaInfo.probe(videoFile.toString());
+        return createVideoPosterFrame(FFmpegInput.of(videoFile));
+    }
+
+    public static byte[] createVideoPosterFrame(FFmpegInput videoFile) {
+        return createVideoPosterFrame(videoFile, MediaProbeResult.probe(videoFile));
+    }
+
+    public static byte[] createVideoPosterFrame(FFmpegInput videoFile, MediaProbeResult probeResult) {
         if (probeResult == null)
             return new byte[0];
 
-        double duration = probeResult.format.duration;
+        double duration = probeResult.getDuration();
         File destFile = null;
 
         try {
@@ -102,12 +108,12 @@ public class AVUtils {
                     .setFilename(destFile.getAbsolutePath());
 
             FFmpegBuilder builder = AVUtils.ffmpeg().builder()
-                    .setInput(probeResult)
+                    .setInput(videoFile.getUrl())
                     .addOutput(output)
                     .overrideOutputFiles(true)
                     .addExtraArgs("-itsoffset").addExtraArgs("-" + (duration / 3.0));
 
-            FFmpegExecutor executor = new FFmpegExecutor(AVUtils.ffmpeg(), AVUtils.ffprobe());
+            FFmpegExecutor executor = new FFmpegExecutor(AVUtils.ffmpeg(videoFile.processFunction()), AVUtils.ffprobe(videoFile.processFunction()));
             executor.createJob(builder).run();
 
             if (destFile.exists()) {
@@ -127,114 +133,35 @@ public class AVUtils {
 
     // creates a very wide PNG image with frames extracted from the video
     public static BufferedImage createVideoPreviewImage(Path videoFileName) {
-        File tempDir = null;
+        return createVideoPreviewImage(FFmpegInput.of(videoFileName));
+    }
+
+    public static BufferedImage createVideoPreviewImage(FFmpegInput videoFileName) {
+        return createVideoPreviewImage(videoFileName, MediaProbeResult.probe(videoFileName));
+    }
+
+    public static BufferedImage createVideoPreviewImage(FFmpegInput videoFileName, MediaProbeResult probeResult) {
         try {
-            FFmpegProbeResult probeResult = AVMediaInfo.probe(videoFileName.toFile().getAbsolutePath());
             if (probeResult == null)
                 return null;
 
-            double videoDuration = probeResult.format.duration;
+            double videoDuration = probeResult.getDuration();
             double defaultFPSToExtract = 1.0;
             if (videoDuration <= ArtifactThumbnailRepositoryProps.FRAMES_PER_PREVIEW) {
                 defaultFPSToExtract = (double) ArtifactThumbnailRepositoryProps.FRAMES_PER_PREVIEW / videoDuration;
             }
 
-            tempDir = Files.createTempDirectory("frames-").toFile();
-
-            FFmpegOutputBuilder output = new FFmpegOutputBuilder()
-                    .setFilename(new File(tempDir, "image-%8d.png").getAbsolutePath());
-
-            FFmpegBuilder builder = AVUtils.ffmpeg().builder()
-                    .setInput(videoFileName.toFile().getAbsolutePath())
-                    .addOutput(output)
-                    .addExtraArgs("-r").addExtraArgs(String.valueOf(defaultFPSToExtract));
-
-            FFmpegExecutor executor = new FFmpegExecutor(AVUtils.ffmpeg(), AVUtils.ffprobe());
-            executor.createJob(builder).run();
-
-            Pattern fileNamePattern = Pattern.compile("image-([0-9]+)\\.png");
-            java.util.List<Pair<Long, File>> videoFrames = new ArrayList<>();
-
-            for (File frameFile : tempDir.listFiles()) {
-                Matcher m = fileNamePattern.matcher(frameFile.getName());
-                if (!m.matches()) {
-                    continue;
-                }
-                long frameStartTime = (long) ((Double.parseDouble(m.group(1)) / defaultFPSToExtract) * 1000.0);
-                videoFrames.add(Pair.of(frameStartTime, frameFile));
-            }
-
-            videoFrames.sort(Comparator.comparingLong(Pair::first));
-
-            java.util.List<Pair<Long, File>> framesForPreview = new ArrayList<>();
-            double skip = (double) videoFrames.size() / (double) FRAMES_PER_PREVIEW;
-            for (double i = 0; i < videoFrames.size(); i += skip) {
-                framesForPreview.add(videoFrames.get((int) Math.floor(i)));
-            }
-            if (framesForPreview.size() < FRAMES_PER_PREVIEW) {
-                framesForPreview.add(videoFrames.get(videoFrames.size() - 1));
-            }
-            if (framesForPreview.size() > FRAMES_PER_PREVIEW) {
-                framesForPreview.remove(framesForPreview.size() - 1);
-            }
-
-            int previewFrameWidth = PREVIEW_FRAME_WIDTH;
-            int previewFrameHeight = PREVIEW_FRAME_HEIGHT;
-
-            BufferedImage previewImage = null;
-            Graphics g = null;
-            for (int i = 0; i < framesForPreview.size(); i++) {
-                Pair<Long, File> videoFrame = framesForPreview.get(i);
-                BufferedImage img = loadImage(videoFrame.other());
-                int widthImage = img.getWidth(null);
-                int heightImage = img.getHeight(null);
-                if (i == 0) {
-                    float ratioImage = (float) widthImage / (float) heightImage;
-                    float ratioContainer = (float) previewFrameWidth / (float) previewFrameHeight;
-                    float calculatedWidth, calculatedHeight;
-                    if (ratioContainer > ratioImage) {
-                        calculatedWidth = widthImage * ((float) previewFrameHeight / heightImage);
-                        calculatedHeight = (float) previewFrameHeight;
-                    } else {
-                        calculatedWidth = (float) previewFrameWidth;
-                        calculatedHeight = heightImage * ((float) previewFrameWidth / widthImage);
-                    }
-                    previewFrameWidth = (int) calculatedWidth;
-                    previewFrameHeight = (int) calculatedHeight;
-                    previewImage = new BufferedImage(previewFrameWidth * framesForPreview.size(), previewFrameHeight, BufferedImage.TYPE_INT_RGB);
-                    g = previewImage.createGraphics();
-                }
-                int dx1 = i * previewFrameWidth;
-                int dy1 = 0;
-                int dx2 = dx1 + previewFrameWidth;
-                int dy2 = previewFrameHeight;
-                int sx1 = 0;
-                int sy1 = 0;
-                g.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, widthImage, heightImage, null);
-            }
-
-            if (previewImage != null) {
-                g.dispose();
-                return previewImage;
-            }
+            RawVideoFrameReader reader = new RawVideoFrameReader(videoFileName, probeResult, FrameSampling.fixed(defaultFPSToExtract));
+            Dimension tileSize = VideoPreviewComposer.getTileSize(reader.getWidth(), reader.getHeight());
+            reader.withSize(tileSize.width, tileSize.height);
 
+            VideoPreviewComposer composer = new VideoPreviewComposer(reader.getWidth(), reader.getHeight());
+            reader.read((startTime, frame) -> composer.add(frame));
+            return composer.compose();
         } catch (IOException ex) {
             LOGGER.warn("Could not generate video preview.", ex);
-        } finally {
-            try {
-                FileUtils.deleteDirectory(tempDir);
-            } catch (IOException e) {
-            }
         }
 
         return null;
     }
-
-    private static BufferedImage loadImage(File videoFrame) throws IOException {
-        try (InputStream spvIn = new FileInputStream(videoFrame)) {
-            BufferedImage img = ImageIO.read(spvIn);
-            checkNotNull(img, "Could not load image from frame: " + videoFrame);
-            return img;
-        }
-    }
 }
@@ -0,0 +1,222 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import com.mware.core.util.BcLogger;
+import com.mware.core.util.BcLoggerFactory;
+import com.mware.ge.values.storable.StreamingPropertyValue;
+import net.bramp.ffmpeg.ProcessFunction;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Where ffmpeg and ffprobe read a media file from. A local file is used as it is. Otherwise the content is
+ * streamed to the process through <code>pipe:0</code>, opening a new stream for every process, so nothing is
+ * written to disk. MP4 files that have their moov box after the media data can't be read from a pipe,
+ * those are copied to a temp file which is deleted on {@link #close()}.
+ */
+public class FFmpegInput implements Closeable {
+    private static final BcLogger LOGGER = BcLoggerFactory.getLogger(FFmpegInput.class);
+    public static final String PIPE = "pipe:0";
+    // the boxes in front of moov/mdat (ftyp, free, wide, ...) are small
+    private static final int MP4_HEADER_PEEK_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final boolean tempFile;
+    private final InputStreamSource source;
+
+    private FFmpegInput(Path file, boolean tempFile, InputStreamSource source) {
+        this.file = file;
+        this.tempFile = tempFile;
+        this.source = source;
+    }
+
+    public static FFmpegInput of(Path file) {
+        return new FFmpegInput(checkNotNull(file), false, null);
+    }
+
+    public static FFmpegInput of(StreamingPropertyValue spv) throws IOException {
+        return of(null, spv);
+    }
+
+    /**
+     * @param localFile the content as a local file, if the caller already has one; may be null
+     */
+    public static FFmpegInput of(File localFile, StreamingPropertyValue spv) throws IOException {
+        return of(localFile, spv::getInputStream);
+    }
+
+    public static FFmpegInput of(File localFile, InputStreamSource source) throws IOException {
+        if (localFile != null && localFile.isFile()) {
+            return of(localFile.toPath());
+        }
+        try (InputStream in = source.open()) {
+            if (isStreamable(in)) {
+                return new FFmpegInput(null, false, source);
+            }
+        }
+
+        LOGGER.debug("Input can't be streamed, copying it to a temp file");
+        Path file = Files.createTempFile("ffmpeg-input-", "");
+        try (InputStream in = source.open(); OutputStream out = Files.newOutputStream(file)) {
+            IOUtils.copyLarge(in, out);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(file.toFile());
+            throw e;
+        }
+        return new FFmpegInput(file, true, null);
+    }
+
+    public boolean isPipe() {
+        return file == null;
+    }
+
+    /**
+     * @return the file path or {@link #PIPE}, to be used as the ffmpeg/ffprobe input
+     */
+    public String getUrl() {
+        return isPipe() ? PIPE : file.toAbsolutePath().toString();
+    }
+
+    /**
+     * @return the local file, or null when the input is piped
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    public InputStream openStream() throws IOException {
+        return isPipe() ? source.open() : Files.newInputStream(file);
+    }
+
+    /**
+     * Starts the process and, for piped inputs, feeds the content to its stdin from a background thread.
+     * Processes that don't read the pipe, such as <code>ffmpeg -version</code>, get their stdin closed.
+     */
+    public Process start(List<String> args) throws IOException {
+        Process process = new ProcessBuilder(args).start();
+        if (isPipe() && args.contains(PIPE)) {
+            Thread feeder = new Thread(() -> feed(process), "ffmpeg-input");
+            feeder.setDaemon(true);
+            feeder.start();
+        } else {
+            process.getOutputStream().close();
+        }
+        return process;
+    }
+
+    public ProcessFunction processFunction() {
+        return this::start;
+    }
+
+    private void feed(Process process) {
+        try (InputStream in = source.open(); OutputStream out = process.getOutputStream()) {
+            IOUtils.copyLarge(in, out);
+        } catch (IOException e) {
+            // ffmpeg stops reading once it has what it needs, e.g. a single poster frame
+            LOGGER.debug("Stopped feeding ffmpeg: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Everything but MP4 with the media data in front of the moov box can be read sequentially.
+     */
+    static boolean isStreamable(InputStream in) throws IOException {
+        byte[] header = new byte[MP4_HEADER_PEEK_SIZE];
+        int length = IOUtils.read(in, header);
+        if (length < 8 || !"ftyp".equals(boxType(header, 0))) {
+            return true;
+        }
+
+        int offset = 0;
+        while (offset + 8 <= length) {
+            long size = readUnsignedInt(header, offset);
+            String type = boxType(header, offset);
+            if ("moov".equals(type)) {
+                return true;
+            }
+            if ("mdat".equals(type)) {
+                return false;
+            }
+            if (size == 1 && offset + 16 <= length) {
+                size = (readUnsignedInt(header, offset + 8) << 32) | readUnsignedInt(header, offset + 12);
+            }
+            if (size < 8 || offset + size > length) {
+                break;
+            }
+            offset += (int) size;
+        }
+        // couldn't find either box in the peeked bytes, don't risk a pipe
+        return false;
+    }
+
+    private static String boxType(byte[] buffer, int offset) {
+        return new String(buffer, offset + 4, 4, StandardCharsets.ISO_8859_1);
+    }
+
+    private static long readUnsignedInt(byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFFL) << 24)
+                | ((buffer[offset + 1] & 0xFFL) << 16)
+                | ((buffer[offset + 2] & 0xFFL) << 8)
+                | (buffer[offset + 3] & 0xFFL);
+    }
+
+    @Override
+    public void close() {
+        if (tempFile) {
+            FileUtils.deleteQuietly(file.toFile());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return isPipe() ? PIPE : file.toString();
+    }
+
+    @FunctionalInterface
+    public interface InputStreamSource {
+        InputStream open() throws IOException;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * How frames are picked from a video:
+ * <ul>
+ *     <li>{@link Mode#FIXED} - at a fixed rate, which requires decoding every frame</li>
+ *     <li>{@link Mode#KEYFRAME} - only keyframes; the decoder skips everything else</li>
+ *     <li>{@link Mode#SCENE_CHANGE} - frames whose scene change score is above a threshold</li>
+ * </ul>
+ * The variable modes name the frame files after their timestamp in milliseconds, so
+ * {@link #getStartTime(long)} works the same for all modes.
+ */
+public class FrameSampling {
+    public enum Mode {
+        FIXED,
+        KEYFRAME,
+        SCENE_CHANGE
+    }
+
+    private final Mode mode;
+    private final double framesPerSecond;
+    private final double sceneThreshold;
+
+    private FrameSampling(Mode mode, double framesPerSecond, double sceneThreshold) {
+        this.mode = mode;
+        this.framesPerSecond = framesPerSecond;
+        this.sceneThreshold = sceneThreshold;
+    }
+
+    public static FrameSampling fixed(double framesPerSecond) {
+        return new FrameSampling(Mode.FIXED, framesPerSecond, 0);
+    }
+
+    public static FrameSampling keyframes() {
+        return new FrameSampling(Mode.KEYFRAME, 0, 0);
+    }
+
+    public static FrameSampling sceneChanges(double threshold) {
+        return new FrameSampling(Mode.SCENE_CHANGE, 0, threshold);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Options that go before the input file.
+     */
+    public List<String> getInputOptions() {
+        if (mode == Mode.KEYFRAME) {
+            return Arrays.asList("-skip_frame", "nokey");
+        }
+        return Collections.emptyList();
+    }
+
+    public String getFilter() {
+        switch (mode) {
+            case KEYFRAME:
+                return "settb=1/1000";
+            case SCENE_CHANGE:
+                return "select=gt(scene\\," + sceneThreshold + "),settb=1/1000";
+            default:
+                return "fps=" + framesPerSecond;
+        }
+    }
+
+    /**
+     * Options that go before the frame file pattern.
+     */
+    public List<String> getOutputOptions() {
+        if (mode == Mode.FIXED) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList("-vsync", "vfr", "-frame_pts", "1");
+    }
+
+    /**
+     * @param frameNumber the number in the frame file name
+     * @return the start time of the frame in milliseconds
+     */
+    public long getStartTime(long frameNumber) {
+        if (mode == Mode.FIXED) {
+            return (long) ((frameNumber / framesPerSecond) * 1000.0);
+        }
+        return frameNumber;
+    }
+
+    /**
+     * Picks at most maxFrames items spread evenly over the list, always keeping the first one.
+     */
+    public static <T> List<T> spread(List<T> frames, int maxFrames) {
+        if (maxFrames <= 0 || frames.size() <= maxFrames) {
+            return frames;
+        }
+        List<T> results = new ArrayList<>(maxFrames);
+        double step = (double) frames.size() / maxFrames;
+        for (int i = 0; i < maxFrames; i++) {
+            results.add(frames.get((int) Math.floor(i * step)));
+        }
+        return results;
+    }
+
+    /**
+     * Keeps an evenly spread subset of a sequence of unknown length in bounded memory: once it holds twice
+     * the wanted number of items, every other item is dropped and only every other new item is taken from then on.
+     */
+    public static class SpreadBuffer<T> {
+        private final int maxItems;
+        private final List<T> items = new ArrayList<>();
+        private int stride = 1;
+        private long seen;
+
+        public SpreadBuffer(int maxItems) {
+            checkArgument(maxItems > 0, "maxItems must be positive");
+            this.maxItems = maxItems;
+        }
+
+        public void add(T item) {
+            add(item, dropped -> { });
+        }
+
+        /**
+         * Adds the next item and passes every item the buffer lets go of, including the new one when it's
+         * skipped, to the dropped consumer, so that callers can release what the items hold on to.
+         */
+        public void add(T item, Consumer<? super T> dropped) {
+            if (seen++ % stride != 0) {
+                dropped.accept(item);
+                return;
+            }
+            items.add(item);
+            if (items.size() >= 2 * maxItems) {
+                for (int i = 0; i < items.size(); i++) {
+                    if (i % 2 != 0) {
+                        dropped.accept(items.get(i));
+                    }
+                }
+                for (int i = 0; i < items.size() / 2; i++) {
+                    items.set(i, items.get(2 * i));
+                }
+                items.subList(items.size() / 2, items.size()).clear();
+                stride *= 2;
+            }
+        }
+
+        /**
+         * @return at most maxItems items, in the order they were added
+         */
+        public List<T> getItems() {
+            return spread(items, maxItems);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FrameSampling{" +
+                "mode=" + mode +
+                ", framesPerSecond=" + framesPerSecond +
+                ", sceneThreshold=" + sceneThreshold +
+                '}';
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.mware.core.model.properties.types.StringBcProperty;
+import com.mware.core.util.BcLogger;
+import com.mware.core.util.BcLoggerFactory;
+import com.mware.ge.Element;
+import com.mware.ge.Metadata;
+import com.mware.ge.Property;
+import com.mware.ge.Visibility;
+import com.mware.ge.mutation.ElementMutation;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Probes a media property once and shares the result between workers. Results are kept in memory and in a hidden
+ * property of the element, keyed by the name and key of the probed property, next to a fingerprint of the probed
+ * property so a changed file is probed again.
+ * <p>
+ * Hashing a whole video would cost more than probing it, so the fingerprint isn't a content hash: it covers the
+ * timestamp of the probed property, which changes whenever the property is updated, plus the first 64 KiB of the
+ * content as a cheap extra check. Both can be had without reading the rest of the content, whether it is a local
+ * file or piped.
+ */
+public class MediaProbeCache {
+    private static final BcLogger LOGGER = BcLoggerFactory.getLogger(MediaProbeCache.class);
+    public static final StringBcProperty MEDIA_PROBE = new StringBcProperty("mediaProbe");
+
+    private static final String SEPARATOR = "\n";
+    private static final int FINGERPRINTED_BYTES = 64 * 1024;
+    private static final Cache<String, MediaProbeResult> CACHE = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    /**
+     * @return the probe result of the property content, or null if ffprobe failed
+     */
+    public static MediaProbeResult probe(Element element, Property property, FFmpegInput input) {
+        if (property == null) {
+            return MediaProbeResult.probe(input);
+        }
+
+        String fingerprint;
+        try {
+            fingerprint = fingerprint(property.getTimestamp(), input);
+        } catch (IOException e) {
+            LOGGER.warn("Could not fingerprint media content of %s, probing it without the cache", element.getId(), e);
+            return MediaProbeResult.probe(input);
+        }
+
+        String cacheKey = element.getId() + SEPARATOR + probeKey(property) + SEPARATOR + fingerprint;
+        MediaProbeResult result = CACHE.getIfPresent(cacheKey);
+        if (result != null) {
+            return result;
+        }
+
+        result = read(element, property, fingerprint);
+        if (result == null) {
+            result = MediaProbeResult.probe(input, fingerprint);
+            if (result == null) {
+                return null;
+            }
+        }
+        CACHE.put(cacheKey, result);
+        return result;
+    }
+
+    /**
+     * Stores the result on the element, unless it is already there.
+     */
+    public static void save(ElementMutation<?> mutation, Element element, Property property, MediaProbeResult result, Visibility visibility) {
+        if (property == null || result == null || result.getFingerprint() == null) {
+            return;
+        }
+        String value = MEDIA_PROBE.getPropertyValue(element, probeKey(property));
+        if (value != null && value.startsWith(result.getFingerprint() + SEPARATOR)) {
+            return;
+        }
+        value = result.getFingerprint() + SEPARATOR + result.toJson();
+        MEDIA_PROBE.addPropertyValue(mutation, probeKey(property), value, Metadata.create(), visibility);
+    }
+
+    private static MediaProbeResult read(Element element, Property property, String fingerprint) {
+        String value = MEDIA_PROBE.getPropertyValue(element, probeKey(property));
+        if (StringUtils.isEmpty(value) || !value.startsWith(fingerprint + SEPARATOR)) {
+            return null;
+        }
+        try {
+            return MediaProbeResult.fromJson(value.substring(fingerprint.length() + SEPARATOR.length()), fingerprint);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not read the stored probe result of %s", element.getId(), e);
+            return null;
+        }
+    }
+
+    private static String probeKey(Property property) {
+        return property.getName() + ":" + property.getKey();
+    }
+
+    static String fingerprint(long propertyTimestamp, FFmpegInput input) throws IOException {
+        // the length isn't known for every piped input, so it is left out to get the same fingerprint either way
+        Hasher hasher = Hashing.sha256().newHasher().putLong(propertyTimestamp);
+        byte[] buffer = new byte[FINGERPRINTED_BYTES];
+        try (InputStream in = input.openStream()) {
+            hasher.putBytes(buffer, 0, IOUtils.read(in, buffer));
+        }
+        return hasher.hash().toString();
+    }
+}
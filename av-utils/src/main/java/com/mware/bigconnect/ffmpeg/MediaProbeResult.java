@@ -0,0 +1,176 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import com.google.gson.Gson;
+import com.mware.ge.collection.Pair;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ffprobe output of a media file with its video and audio streams sorted out once, so asking for them
+ * doesn't scan the stream list again. Instances are shared through {@link MediaProbeCache} and must not be
+ * modified; the wrapped {@link FFmpegProbeResult} is only exposed for code that still takes it.
+ */
+public final class MediaProbeResult {
+    private static final Gson GSON = new Gson();
+
+    private final FFmpegProbeResult probeResult;
+    private final String fingerprint;
+    private final List<FFmpegStream> videoStreams;
+    private final List<FFmpegStream> audioStreams;
+
+    private MediaProbeResult(FFmpegProbeResult probeResult, String fingerprint) {
+        this.probeResult = probeResult;
+        this.fingerprint = fingerprint;
+
+        List<FFmpegStream> videoStreams = new ArrayList<>();
+        List<FFmpegStream> audioStreams = new ArrayList<>();
+        if (probeResult.getStreams() != null) {
+            for (FFmpegStream stream : probeResult.getStreams()) {
+                if (stream.codec_type == FFmpegStream.CodecType.VIDEO) {
+                    videoStreams.add(stream);
+                } else if (stream.codec_type == FFmpegStream.CodecType.AUDIO) {
+                    audioStreams.add(stream);
+                }
+            }
+        }
+        this.videoStreams = Collections.unmodifiableList(videoStreams);
+        this.audioStreams = Collections.unmodifiableList(audioStreams);
+    }
+
+    public static MediaProbeResult of(FFmpegProbeResult probeResult) {
+        return probeResult == null ? null : new MediaProbeResult(probeResult, null);
+    }
+
+    /**
+     * Runs ffprobe, without caching.
+     *
+     * @return the result, or null if ffprobe failed
+     */
+    public static MediaProbeResult probe(FFmpegInput input) {
+        return of(AVMediaInfo.probe(input));
+    }
+
+    static MediaProbeResult probe(FFmpegInput input, String fingerprint) {
+        FFmpegProbeResult probeResult = AVMediaInfo.probe(input);
+        return probeResult == null ? null : new MediaProbeResult(probeResult, fingerprint);
+    }
+
+    static MediaProbeResult fromJson(String json, String fingerprint) {
+        return new MediaProbeResult(GSON.fromJson(json, FFmpegProbeResult.class), fingerprint);
+    }
+
+    String toJson() {
+        return GSON.toJson(probeResult);
+    }
+
+    public FFmpegProbeResult getProbeResult() {
+        return probeResult;
+    }
+
+    /**
+     * @return the fingerprint of the probed property, see {@link MediaProbeCache}, or null if the result isn't cached
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public boolean hasVideoStream() {
+        return !videoStreams.isEmpty();
+    }
+
+    public boolean hasAudioStream() {
+        return !audioStreams.isEmpty();
+    }
+
+    /**
+     * @return the first video stream, or null
+     */
+    public FFmpegStream getVideoStream() {
+        return hasVideoStream() ? videoStreams.get(0) : null;
+    }
+
+    /**
+     * @return the first audio stream, or null
+     */
+    public FFmpegStream getAudioStream() {
+        return hasAudioStream() ? audioStreams.get(0) : null;
+    }
+
+    public List<FFmpegStream> getVideoStreams() {
+        return videoStreams;
+    }
+
+    public List<FFmpegStream> getAudioStreams() {
+        return audioStreams;
+    }
+
+    public double getDuration() {
+        return probeResult.getFormat() == null ? 0.0 : probeResult.getFormat().duration;
+    }
+
+    public Pair<Integer, Integer> getDimensions() {
+        FFmpegStream stream = getVideoStream();
+        return stream == null ? null : Pair.of(stream.width, stream.height);
+    }
+
+    public VideoFormat getVideoFormat() {
+        return hasVideoStream() ? AVMediaInfo.parseVideoFormat(probeResult.getFormat().format_name) : null;
+    }
+
+    public AudioFormat getAudioFormat() {
+        return hasAudioStream() ? AVMediaInfo.parseAudioFormat(probeResult.getFormat().format_name) : null;
+    }
+
+    public VideoCodec getVideoCodec() {
+        return hasVideoStream() ? AVMediaInfo.parseVideoCodec(getVideoStream().codec_name) : null;
+    }
+
+    public AudioCodec getAudioCodec() {
+        return hasAudioStream() ? AVMediaInfo.parseAudioCodec(getAudioStream().codec_name) : null;
+    }
+
+    @Override
+    public String toString() {
+        return probeResult.toString();
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import com.mware.core.util.BcLogger;
+import com.mware.core.util.BcLoggerFactory;
+import com.mware.ge.collection.Pair;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Decodes sampled frames of a video straight into {@link BufferedImage}s: ffmpeg scales the frames and writes them
+ * as raw BGR pixels to stdout, which are read into the image rasters without any intermediate image files.
+ * The variable sampling modes don't produce frames at known times, so their timestamps are taken from the
+ * showinfo filter output on stderr.
+ */
+public class RawVideoFrameReader {
+    private static final BcLogger LOGGER = BcLoggerFactory.getLogger(RawVideoFrameReader.class);
+    private static final Pattern PTS_TIME = Pattern.compile("pts_time:\\s*(-?[0-9.]+)");
+    private static final int STDERR_LINES_TO_KEEP = 20;
+    private static final long TIMESTAMP_WAIT_SECONDS = 30;
+
+    private final FFmpegInput videoFile;
+    private final FrameSampling frameSampling;
+    private int width;
+    private int height;
+
+    public RawVideoFrameReader(Path videoFile, FFmpegProbeResult probeResult, FrameSampling frameSampling) throws IOException {
+        this(FFmpegInput.of(videoFile), MediaProbeResult.of(probeResult), frameSampling);
+    }
+
+    public RawVideoFrameReader(FFmpegInput videoFile, MediaProbeResult probeResult, FrameSampling frameSampling) throws IOException {
+        this.videoFile = videoFile;
+        this.frameSampling = frameSampling;
+        Pair<Integer, Integer> dimensions = probeResult == null ? null : probeResult.getDimensions();
+        if (dimensions == null || dimensions.first() <= 0 || dimensions.other() <= 0) {
+            throw new IOException("Could not get the video dimensions of: " + videoFile);
+        }
+        // ffmpeg rotates the frames according to the stream metadata
+        if (isRotated(probeResult)) {
+            this.width = dimensions.other();
+            this.height = dimensions.first();
+        } else {
+            this.width = dimensions.first();
+            this.height = dimensions.other();
+        }
+    }
+
+    /**
+     * Scales the frames down, keeping the aspect ratio, when they are wider than maxWidth.
+     */
+    public RawVideoFrameReader withMaxWidth(int maxWidth) {
+        if (maxWidth > 0 && width > maxWidth) {
+            height = Math.max(1, Math.round((float) height * maxWidth / width));
+            width = maxWidth;
+        }
+        return this;
+    }
+
+    public RawVideoFrameReader withSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        return this;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    List<String> buildArguments() {
+        boolean variable = frameSampling.getMode() != FrameSampling.Mode.FIXED;
+        List<String> args = new ArrayList<>(Arrays.asList(AVUtils.ffmpegPath(), "-hide_banner", "-nostats", "-v", variable ? "info" : "error"));
+        args.addAll(frameSampling.getInputOptions());
+        args.addAll(Arrays.asList("-i", videoFile.getUrl(), "-map", "0:v:0", "-an"));
+
+        String filter = frameSampling.getFilter() + ",scale=" + width + ":" + height;
+        if (variable) {
+            filter += ",showinfo";
+        }
+        args.add("-vf");
+        args.add(filter);
+        if (variable) {
+            args.addAll(Arrays.asList("-vsync", "vfr"));
+        }
+        args.addAll(Arrays.asList("-f", "rawvideo", "-pix_fmt", "bgr24", "pipe:1"));
+        return args;
+    }
+
+    /**
+     * Runs ffmpeg and hands every frame to the consumer as it is decoded. The consumer gets a new image
+     * for every frame, which it may keep.
+     *
+     * @return the number of frames read
+     */
+    public int read(FrameConsumer consumer) throws IOException {
+        List<String> args = buildArguments();
+        LOGGER.debug("Running: %s", String.join(" ", args));
+
+        Process process = videoFile.start(args);
+        StderrReader stderr = new StderrReader(process.getErrorStream(), frameSampling.getMode() != FrameSampling.Mode.FIXED);
+        stderr.start();
+
+        int frameCount = 0;
+        boolean completed = false;
+        try (InputStream in = new BufferedInputStream(process.getInputStream(), 1 << 16)) {
+            while (true) {
+                BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+                byte[] pixels = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+                int read = readFully(in, pixels);
+                if (read < pixels.length) {
+                    if (read > 0) {
+                        LOGGER.warn("Dropping incomplete frame of %s (%d of %d bytes)", videoFile, read, pixels.length);
+                    }
+                    break;
+                }
+                frameCount++;
+                consumer.accept(getStartTime(stderr, frameCount), frame);
+            }
+
+            int exitCode = process.waitFor();
+            stderr.join();
+            if (exitCode != 0) {
+                throw new IOException("ffmpeg exited with " + exitCode + " for " + videoFile + ": " + stderr.getLastLines());
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading frames of " + videoFile);
+        } finally {
+            if (!completed) {
+                process.destroyForcibly();
+            }
+        }
+        return frameCount;
+    }
+
+    private long getStartTime(StderrReader stderr, int frameNumber) throws IOException, InterruptedException {
+        if (frameSampling.getMode() == FrameSampling.Mode.FIXED) {
+            // same numbering as the image-%8d.png files, which start at 1
+            return frameSampling.getStartTime(frameNumber);
+        }
+        Long startTime = stderr.timestamps.poll(TIMESTAMP_WAIT_SECONDS, TimeUnit.SECONDS);
+        if (startTime == null) {
+            throw new IOException("No timestamp for frame " + frameNumber + " of " + videoFile);
+        }
+        return startTime;
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = in.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static boolean isRotated(MediaProbeResult probeResult) {
+        FFmpegStream stream = probeResult.getVideoStream();
+        String rotate = stream.tags == null ? null : stream.tags.get("rotate");
+        if (rotate == null) {
+            return false;
+        }
+        try {
+            return Math.abs(Integer.parseInt(rotate.trim())) % 180 == 90;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    public interface FrameConsumer {
+        /**
+         * @param startTime the start time of the frame in milliseconds
+         */
+        void accept(long startTime, BufferedImage frame) throws IOException;
+    }
+
+    private static class StderrReader extends Thread {
+        private final InputStream in;
+        private final boolean parseTimestamps;
+        private final BlockingQueue<Long> timestamps = new LinkedBlockingQueue<>();
+        private final LinkedList<String> lastLines = new LinkedList<>();
+
+        StderrReader(InputStream in, boolean parseTimestamps) {
+            super("ffmpeg-stderr");
+            setDaemon(true);
+            this.in = checkNotNull(in);
+            this.parseTimestamps = parseTimestamps;
+        }
+
+        @Override
+        public void run() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (parseTimestamps && line.contains("Parsed_showinfo")) {
+                        Matcher m = PTS_TIME.matcher(line);
+                        if (m.find()) {
+                            timestamps.add(Math.max(0L, Math.round(Double.parseDouble(m.group(1)) * 1000.0)));
+                            continue;
+                        }
+                    }
+                    synchronized (lastLines) {
+                        lastLines.add(line);
+                        if (lastLines.size() > STDERR_LINES_TO_KEEP) {
+                            lastLines.removeFirst();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Could not read ffmpeg output", e);
+            }
+        }
+
+        String getLastLines() {
+            synchronized (lastLines) {
+                return String.join("\n", lastLines);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import com.mware.core.model.properties.BcSchema;
+import com.mware.core.model.properties.MediaBcSchema;
+import com.mware.ge.Element;
+import com.mware.ge.Metadata;
+import com.mware.ge.Property;
+import com.mware.ge.Visibility;
+import com.mware.ge.values.storable.Values;
+
+/**
+ * Tells which outputs of a single-pass {@link VideoProcessingPipeline} run are still current. The worker running
+ * the pipeline stores the poster frame under {@link #POSTER_FRAME_KEY} and marks the poster frame and the preview
+ * image with the timestamp of the RAW property they were made from. Replacing the RAW property changes its
+ * timestamp, so the outputs of the previous content are no longer current and the other workers produce them
+ * again.
+ */
+public class SinglePassOutputs {
+    public static final String POSTER_FRAME_KEY = "io.bigconnect.dw.video.frame.VideoFrameExtractorWorker";
+    public static final String METADATA_RAW_TIMESTAMP = "singlePassRawTimestamp";
+
+    private SinglePassOutputs() {
+    }
+
+    public static void mark(Metadata metadata, Property raw, Visibility visibility) {
+        metadata.add(METADATA_RAW_TIMESTAMP, Values.longValue(raw.getTimestamp()), visibility);
+    }
+
+    /**
+     * @return true if the element has both a poster frame and a preview image made by a single-pass run from
+     * its current RAW property
+     */
+    public static boolean hasPosterFrameAndPreviewImage(Element element) {
+        Property raw = element.getProperty(BcSchema.RAW.getPropertyName());
+        if (raw == null) {
+            return false;
+        }
+        return isCurrent(element.getProperty(POSTER_FRAME_KEY, MediaBcSchema.RAW_POSTER_FRAME.getPropertyName()), raw)
+                && isCurrent(element.getProperty(MediaBcSchema.VIDEO_PREVIEW_IMAGE.getPropertyName()), raw);
+    }
+
+    private static boolean isCurrent(Property output, Property raw) {
+        return output != null
+                && Values.longValue(raw.getTimestamp()).equals(output.getMetadata().getValue(METADATA_RAW_TIMESTAMP));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static com.mware.bigconnect.ffmpeg.ArtifactThumbnailRepositoryProps.*;
+
+/**
+ * Builds the very wide preview image out of frames as they are decoded. Every frame is scaled down to a tile
+ * right away and only an evenly spread subset of tiles is kept, so memory use doesn't depend on the video length.
+ */
+public class VideoPreviewComposer {
+    private final int tileWidth;
+    private final int tileHeight;
+    private final FrameSampling.SpreadBuffer<BufferedImage> tiles = new FrameSampling.SpreadBuffer<>(FRAMES_PER_PREVIEW);
+
+    public VideoPreviewComposer(int frameWidth, int frameHeight) {
+        Dimension tileSize = getTileSize(frameWidth, frameHeight);
+        this.tileWidth = tileSize.width;
+        this.tileHeight = tileSize.height;
+    }
+
+    /**
+     * Fits the frame into a PREVIEW_FRAME_WIDTH x PREVIEW_FRAME_HEIGHT box, keeping its aspect ratio.
+     */
+    public static Dimension getTileSize(int frameWidth, int frameHeight) {
+        float ratioImage = (float) frameWidth / (float) frameHeight;
+        float ratioContainer = (float) PREVIEW_FRAME_WIDTH / (float) PREVIEW_FRAME_HEIGHT;
+        if (ratioContainer > ratioImage) {
+            return new Dimension(Math.max(1, (int) (frameWidth * ((float) PREVIEW_FRAME_HEIGHT / frameHeight))), PREVIEW_FRAME_HEIGHT);
+        } else {
+            return new Dimension(PREVIEW_FRAME_WIDTH, Math.max(1, (int) (frameHeight * ((float) PREVIEW_FRAME_WIDTH / frameWidth))));
+        }
+    }
+
+    public void add(BufferedImage frame) {
+        if (frame.getWidth() == tileWidth && frame.getHeight() == tileHeight) {
+            tiles.add(frame);
+            return;
+        }
+        BufferedImage tile = new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(frame, 0, 0, tileWidth, tileHeight, null);
+        } finally {
+            g.dispose();
+        }
+        tiles.add(tile);
+    }
+
+    /**
+     * @return the preview image, or null when no frames were added
+     */
+    public BufferedImage compose() {
+        List<BufferedImage> previewTiles = tiles.getItems();
+        if (previewTiles.isEmpty()) {
+            return null;
+        }
+        BufferedImage previewImage = new BufferedImage(tileWidth * previewTiles.size(), tileHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = previewImage.createGraphics();
+        try {
+            for (int i = 0; i < previewTiles.size(); i++) {
+                g.drawImage(previewTiles.get(i), i * tileWidth, 0, null);
+            }
+        } finally {
+            g.dispose();
+        }
+        return previewImage;
+    }
+}
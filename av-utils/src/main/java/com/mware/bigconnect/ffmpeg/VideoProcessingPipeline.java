@@ -0,0 +1,234 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import com.mware.core.util.BcLogger;
+import com.mware.core.util.BcLoggerFactory;
+import com.mware.ge.collection.Pair;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.mware.bigconnect.ffmpeg.ArtifactThumbnailRepositoryProps.*;
+
+/**
+ * Produces the poster frame, the preview strip, the sampled frames and the audio track of a video with a
+ * single ffmpeg invocation. The decoded video is split in a filter graph and every requested output gets its
+ * own branch, so the video is decoded once no matter how many outputs are asked for.
+ */
+public class VideoProcessingPipeline {
+    private static final BcLogger LOGGER = BcLoggerFactory.getLogger(VideoProcessingPipeline.class);
+    private static final String FRAME_FILE_PATTERN = "image-%8d.png";
+    private static final Pattern FRAME_FILE_NAME = Pattern.compile("image-([0-9]+)\\.png");
+
+    private final Path videoFile;
+    private final FFmpegProbeResult probeResult;
+    private boolean posterFrame;
+    private boolean previewImage;
+    private boolean audio;
+    private FrameSampling frameSampling;
+
+    public VideoProcessingPipeline(Path videoFile, FFmpegProbeResult probeResult) {
+        this.videoFile = videoFile;
+        this.probeResult = probeResult;
+    }
+
+    public VideoProcessingPipeline withPosterFrame() {
+        this.posterFrame = true;
+        return this;
+    }
+
+    public VideoProcessingPipeline withPreviewImage() {
+        this.previewImage = true;
+        return this;
+    }
+
+    public VideoProcessingPipeline withFrames(double framesPerSecond) {
+        return withFrames(FrameSampling.fixed(framesPerSecond));
+    }
+
+    /**
+     * With keyframe sampling the decoder skips all other frames, which the poster frame and the
+     * preview image then also have to make do without.
+     */
+    public VideoProcessingPipeline withFrames(FrameSampling frameSampling) {
+        this.frameSampling = frameSampling;
+        return this;
+    }
+
+    /**
+     * Extracts the first audio stream as MP3, if the video has one.
+     */
+    public VideoProcessingPipeline withAudio() {
+        this.audio = true;
+        return this;
+    }
+
+    public Result run(File outDir) throws IOException {
+        List<String> args = buildArguments(outDir);
+        LOGGER.debug("running ffmpeg %s", args);
+        AVUtils.ffmpeg().run(args);
+        return collectResult(outDir);
+    }
+
+    List<String> buildArguments(File outDir) {
+        double duration = getDuration();
+
+        // one filter chain and its output options per requested video output
+        List<String> videoChains = new ArrayList<>();
+        List<List<String>> videoOutputs = new ArrayList<>();
+        if (posterFrame) {
+            videoChains.add("select=gte(t\\," + (duration / 3.0) + ")");
+            videoOutputs.add(Arrays.asList("-frames:v", "1", new File(outDir, "poster.png").getAbsolutePath()));
+        }
+        if (previewImage) {
+            double previewFps = duration > 0 ? FRAMES_PER_PREVIEW / duration : 1.0;
+            videoChains.add("fps=" + previewFps
+                    + ",scale=" + PREVIEW_FRAME_WIDTH + ":" + PREVIEW_FRAME_HEIGHT + ":force_original_aspect_ratio=decrease"
+                    + ",tile=" + FRAMES_PER_PREVIEW + "x1");
+            videoOutputs.add(Arrays.asList("-frames:v", "1", new File(outDir, "preview.png").getAbsolutePath()));
+        }
+        if (frameSampling != null) {
+            File framesDir = new File(outDir, "frames");
+            framesDir.mkdirs();
+            videoChains.add(frameSampling.getFilter());
+            List<String> frameOutput = new ArrayList<>(frameSampling.getOutputOptions());
+            frameOutput.add(new File(framesDir, FRAME_FILE_PATTERN).getAbsolutePath());
+            videoOutputs.add(frameOutput);
+        }
+
+        List<String> args = new ArrayList<>(Arrays.asList("-y", "-v", "error"));
+        if (frameSampling != null) {
+            args.addAll(frameSampling.getInputOptions());
+        }
+        args.add("-i");
+        args.add(videoFile.toAbsolutePath().toString());
+
+        if (!videoChains.isEmpty() && AVMediaInfo.hasVideoStream(probeResult)) {
+            StringBuilder filterGraph = new StringBuilder("[0:v:0]");
+            if (videoChains.size() > 1) {
+                filterGraph.append("split=").append(videoChains.size());
+                for (int i = 0; i < videoChains.size(); i++) {
+                    filterGraph.append("[s").append(i).append("]");
+                }
+                for (int i = 0; i < videoChains.size(); i++) {
+                    filterGraph.append(";[s").append(i).append("]").append(videoChains.get(i)).append("[v").append(i).append("]");
+                }
+            } else {
+                filterGraph.append(videoChains.get(0)).append("[v0]");
+            }
+            args.add("-filter_complex");
+            args.add(filterGraph.toString());
+
+            for (int i = 0; i < videoOutputs.size(); i++) {
+                args.add("-map");
+                args.add("[v" + i + "]");
+                args.addAll(videoOutputs.get(i));
+            }
+        }
+
+        if (audio && AVMediaInfo.hasAudioStream(probeResult)) {
+            args.addAll(Arrays.asList("-map", "0:a:0", "-vn", "-ar", "44100", "-b:a", "320k", "-f", "mp3",
+                    new File(outDir, "audio.mp3").getAbsolutePath()));
+        }
+
+        return args;
+    }
+
+    private double getDuration() {
+        if (probeResult == null || probeResult.getFormat() == null || Double.isNaN(probeResult.getFormat().duration)) {
+            return 0.0;
+        }
+        return probeResult.getFormat().duration;
+    }
+
+    private Result collectResult(File outDir) {
+        Result result = new Result();
+        result.posterFrame = existingFile(new File(outDir, "poster.png"));
+        result.previewImage = existingFile(new File(outDir, "preview.png"));
+        result.audio = existingFile(new File(outDir, "audio.mp3"));
+
+        File[] frameFiles = new File(outDir, "frames").listFiles();
+        if (frameFiles != null) {
+            for (File frameFile : frameFiles) {
+                Matcher m = FRAME_FILE_NAME.matcher(frameFile.getName());
+                if (!m.matches()) {
+                    continue;
+                }
+                long frameStartTime = frameSampling.getStartTime(Long.parseLong(m.group(1)));
+                result.frames.add(Pair.of(frameStartTime, frameFile));
+            }
+            result.frames.sort(Comparator.comparingLong(Pair::first));
+        }
+        return result;
+    }
+
+    private static File existingFile(File file) {
+        return file.exists() && file.length() > 0 ? file : null;
+    }
+
+    public static class Result {
+        private File posterFrame;
+        private File previewImage;
+        private File audio;
+        private final List<Pair<Long, File>> frames = new ArrayList<>();
+
+        public File getPosterFrame() {
+            return posterFrame;
+        }
+
+        public File getPreviewImage() {
+            return previewImage;
+        }
+
+        public File getAudio() {
+            return audio;
+        }
+
+        /**
+         * @return the frame files with their start time in milliseconds, in order
+         */
+        public List<Pair<Long, File>> getFrames() {
+            return frames;
+        }
+    }
+}
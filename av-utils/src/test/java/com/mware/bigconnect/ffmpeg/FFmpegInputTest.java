@@ -0,0 +1,98 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class FFmpegInputTest {
+    @Test
+    public void testFastStartMp4IsStreamable() throws Exception {
+        Assert.assertTrue(FFmpegInput.isStreamable(mp4("ftyp", "free", "moov", "mdat")));
+    }
+
+    @Test
+    public void testMoovAtEndMp4IsNotStreamable() throws Exception {
+        Assert.assertFalse(FFmpegInput.isStreamable(mp4("ftyp", "mdat", "moov")));
+    }
+
+    @Test
+    public void testOtherFormatsAreStreamable() throws Exception {
+        byte[] webm = {0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, 0, 0, 0, 0, 0, 0};
+        Assert.assertTrue(FFmpegInput.isStreamable(new ByteArrayInputStream(webm)));
+        Assert.assertTrue(FFmpegInput.isStreamable(new ByteArrayInputStream(new byte[0])));
+    }
+
+    @Test
+    public void testPipeUrl() throws Exception {
+        byte[] content = "ID3 not an mp4".getBytes(StandardCharsets.US_ASCII);
+        try (FFmpegInput input = FFmpegInput.of(null, () -> new ByteArrayInputStream(content))) {
+            Assert.assertTrue(input.isPipe());
+            Assert.assertEquals(FFmpegInput.PIPE, input.getUrl());
+        }
+    }
+
+    @Test
+    public void testMoovAtEndFallsBackToTempFile() throws Exception {
+        byte[] content = mp4Bytes("ftyp", "mdat", "moov");
+        FFmpegInput input = FFmpegInput.of(null, () -> new ByteArrayInputStream(content));
+        Assert.assertFalse(input.isPipe());
+        Assert.assertEquals(content.length, input.getFile().toFile().length());
+        input.close();
+        Assert.assertFalse(input.getFile().toFile().exists());
+    }
+
+    private static ByteArrayInputStream mp4(String... boxTypes) throws IOException {
+        return new ByteArrayInputStream(mp4Bytes(boxTypes));
+    }
+
+    private static byte[] mp4Bytes(String... boxTypes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String boxType : boxTypes) {
+            int size = 24;
+            out.write(new byte[]{0, 0, 0, (byte) size});
+            out.write(boxType.getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[size - 8]);
+        }
+        return out.toByteArray();
+    }
+}
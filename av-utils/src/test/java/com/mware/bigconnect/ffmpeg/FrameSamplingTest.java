@@ -0,0 +1,86 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FrameSamplingTest {
+    @Test
+    public void testSceneChangeFilter() {
+        Assert.assertEquals("select=gt(scene\\,0.4),settb=1/1000", FrameSampling.sceneChanges(0.4).getFilter());
+        Assert.assertEquals(1500L, FrameSampling.sceneChanges(0.4).getStartTime(1500));
+        Assert.assertEquals(2500L, FrameSampling.fixed(2.0).getStartTime(5));
+    }
+
+    @Test
+    public void testSpreadFrames() {
+        List<Integer> frames = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            frames.add(i);
+        }
+        Assert.assertEquals(Arrays.asList(0, 2, 5, 7), FrameSampling.spread(frames, 4));
+        Assert.assertSame(frames, FrameSampling.spread(frames, 0));
+        Assert.assertSame(frames, FrameSampling.spread(frames, 20));
+    }
+
+    @Test
+    public void testSpreadBuffer() {
+        FrameSampling.SpreadBuffer<Integer> buffer = new FrameSampling.SpreadBuffer<>(4);
+        for (int i = 0; i < 32; i++) {
+            buffer.add(i);
+        }
+        Assert.assertEquals(4, buffer.getItems().size());
+        Assert.assertEquals(Integer.valueOf(0), buffer.getItems().get(0));
+    }
+
+    @Test
+    public void testSpreadBufferReportsDroppedItems() {
+        FrameSampling.SpreadBuffer<Integer> buffer = new FrameSampling.SpreadBuffer<>(3);
+        List<Integer> dropped = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            buffer.add(i, dropped::add);
+        }
+        // 0, 4, 8, 12 and 16 are still held, everything else was handed back
+        Assert.assertEquals(Arrays.asList(1, 3, 5, 7, 9, 2, 6, 10, 11, 13, 14, 15, 17, 18, 19), dropped);
+        Assert.assertEquals(Arrays.asList(0, 4, 12), buffer.getItems());
+    }
+}
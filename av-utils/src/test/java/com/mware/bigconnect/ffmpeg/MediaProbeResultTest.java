@@ -0,0 +1,122 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import net.bramp.ffmpeg.probe.FFmpegFormat;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+public class MediaProbeResultTest {
+    @Test
+    public void testStreamIndexes() {
+        MediaProbeResult result = MediaProbeResult.of(probeResult());
+
+        Assert.assertTrue(result.hasVideoStream());
+        Assert.assertTrue(result.hasAudioStream());
+        Assert.assertEquals("h264", result.getVideoStream().codec_name);
+        Assert.assertEquals(2, result.getAudioStreams().size());
+        Assert.assertEquals(VideoFormat.MP4, result.getVideoFormat());
+        Assert.assertEquals(VideoCodec.H264, result.getVideoCodec());
+        Assert.assertEquals(AudioCodec.AAC, result.getAudioCodec());
+        Assert.assertEquals(Integer.valueOf(1280), result.getDimensions().first());
+        Assert.assertEquals(12.5, result.getDuration(), 0.0);
+    }
+
+    @Test
+    public void testJsonRoundTrip() {
+        MediaProbeResult result = MediaProbeResult.fromJson(MediaProbeResult.of(probeResult()).toJson(), "hash");
+
+        Assert.assertEquals("hash", result.getFingerprint());
+        Assert.assertEquals(VideoFormat.MP4, result.getVideoFormat());
+        Assert.assertEquals(2, result.getAudioStreams().size());
+        Assert.assertEquals(Integer.valueOf(720), result.getDimensions().other());
+    }
+
+    @Test
+    public void testFingerprintFollowsPropertyUpdates() throws Exception {
+        byte[] content = new byte[200 * 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Path file = Files.createTempFile("probe-", ".bin");
+        try {
+            Files.write(file, content);
+            String fingerprint = MediaProbeCache.fingerprint(1000L, FFmpegInput.of(file));
+
+            Assert.assertEquals(fingerprint, MediaProbeCache.fingerprint(1000L, FFmpegInput.of(file)));
+            // a rewritten property gets a new timestamp, even if the change is past the fingerprinted bytes
+            Assert.assertNotEquals(fingerprint, MediaProbeCache.fingerprint(2000L, FFmpegInput.of(file)));
+            content[0] = 1;
+            Files.write(file, content);
+            Assert.assertNotEquals(fingerprint, MediaProbeCache.fingerprint(1000L, FFmpegInput.of(file)));
+
+            FFmpegInput pipe = FFmpegInput.of(null, () -> new ByteArrayInputStream(content));
+            Assert.assertTrue(pipe.isPipe());
+            Assert.assertEquals(MediaProbeCache.fingerprint(1000L, FFmpegInput.of(file)), MediaProbeCache.fingerprint(1000L, pipe));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static FFmpegProbeResult probeResult() {
+        FFmpegProbeResult result = new FFmpegProbeResult();
+        result.format = new FFmpegFormat();
+        result.format.format_name = "mov,mp4,m4a,3gp,3g2,mj2";
+        result.format.duration = 12.5;
+        result.streams = new ArrayList<>();
+        FFmpegStream video = new FFmpegStream();
+        video.codec_type = FFmpegStream.CodecType.VIDEO;
+        video.codec_name = "h264";
+        video.width = 1280;
+        video.height = 720;
+        result.streams.add(video);
+        for (int i = 0; i < 2; i++) {
+            FFmpegStream audio = new FFmpegStream();
+            audio.codec_type = FFmpegStream.CodecType.AUDIO;
+            audio.codec_name = "aac";
+            result.streams.add(audio);
+        }
+        return result;
+    }
+}
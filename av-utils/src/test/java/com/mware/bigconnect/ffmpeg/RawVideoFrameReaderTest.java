@@ -0,0 +1,105 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import net.bramp.ffmpeg.probe.FFmpegFormat;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.mware.bigconnect.ffmpeg.ArtifactThumbnailRepositoryProps.*;
+
+public class RawVideoFrameReaderTest {
+    @Test
+    public void testFixedRateArguments() throws Exception {
+        RawVideoFrameReader reader = new RawVideoFrameReader(Paths.get("/tmp/video.mp4"), probeResult(1920, 1080, null), FrameSampling.fixed(1.0))
+                .withMaxWidth(640);
+        List<String> args = reader.buildArguments();
+
+        Assert.assertEquals(640, reader.getWidth());
+        Assert.assertEquals(360, reader.getHeight());
+        Assert.assertEquals("fps=1.0,scale=640:360", args.get(args.indexOf("-vf") + 1));
+        Assert.assertEquals("rawvideo", args.get(args.indexOf("-f") + 1));
+        Assert.assertEquals("bgr24", args.get(args.indexOf("-pix_fmt") + 1));
+        Assert.assertEquals("pipe:1", args.get(args.size() - 1));
+    }
+
+    @Test
+    public void testSceneChangeArguments() throws Exception {
+        List<String> args = new RawVideoFrameReader(Paths.get("/tmp/video.mp4"), probeResult(1280, 720, "90"), FrameSampling.sceneChanges(0.3))
+                .buildArguments();
+
+        Assert.assertEquals("select=gt(scene\\,0.3),settb=1/1000,scale=720:1280,showinfo", args.get(args.indexOf("-vf") + 1));
+        Assert.assertEquals("vfr", args.get(args.indexOf("-vsync") + 1));
+        Assert.assertEquals("info", args.get(args.indexOf("-v") + 1));
+    }
+
+    @Test
+    public void testPreviewComposition() {
+        VideoPreviewComposer composer = new VideoPreviewComposer(1920, 1080);
+        Assert.assertNull(composer.compose());
+        for (int i = 0; i < 100; i++) {
+            composer.add(new BufferedImage(1920, 1080, BufferedImage.TYPE_3BYTE_BGR));
+        }
+        BufferedImage previewImage = composer.compose();
+        Assert.assertEquals(PREVIEW_FRAME_WIDTH * FRAMES_PER_PREVIEW, previewImage.getWidth());
+        Assert.assertEquals(202, previewImage.getHeight());
+    }
+
+    private static FFmpegProbeResult probeResult(int width, int height, String rotate) {
+        FFmpegProbeResult result = new FFmpegProbeResult();
+        result.format = new FFmpegFormat();
+        result.format.duration = 30.0;
+        result.streams = new ArrayList<>();
+        FFmpegStream video = new FFmpegStream();
+        video.codec_type = FFmpegStream.CodecType.VIDEO;
+        video.width = width;
+        video.height = height;
+        if (rotate != null) {
+            video.tags = Collections.singletonMap("rotate", rotate);
+        }
+        result.streams.add(video);
+        return result;
+    }
+}
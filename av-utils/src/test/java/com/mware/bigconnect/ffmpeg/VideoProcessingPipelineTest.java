@@ -0,0 +1,113 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package com.mware.bigconnect.ffmpeg;
+
+import net.bramp.ffmpeg.probe.FFmpegFormat;
+import net.bramp.ffmpeg.probe.FFmpegProbeResult;
+import net.bramp.ffmpeg.probe.FFmpegStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class VideoProcessingPipelineTest {
+    @Test
+    public void testSingleDecodeArguments() throws Exception {
+        File outDir = Files.createTempDirectory("pipeline-").toFile();
+        List<String> args = new VideoProcessingPipeline(Paths.get("/tmp/video.mp4"), probeResult(true))
+                .withPosterFrame()
+                .withPreviewImage()
+                .withFrames(1.0)
+                .withAudio()
+                .buildArguments(outDir);
+
+        Assert.assertEquals(1, args.stream().filter("-i"::equals).count());
+        String filterGraph = args.get(args.indexOf("-filter_complex") + 1);
+        Assert.assertTrue(filterGraph, filterGraph.startsWith("[0:v:0]split=3[s0][s1][s2]"));
+        Assert.assertTrue(filterGraph, filterGraph.contains("[s0]select=gte(t\\,10.0)[v0]"));
+        Assert.assertTrue(filterGraph, filterGraph.contains("tile=20x1[v1]"));
+        Assert.assertTrue(filterGraph, filterGraph.contains("[s2]fps=1.0[v2]"));
+        Assert.assertTrue(args.contains("0:a:0"));
+        Assert.assertTrue(args.contains(new File(outDir, "audio.mp3").getAbsolutePath()));
+    }
+
+    @Test
+    public void testNoAudioStream() throws Exception {
+        File outDir = Files.createTempDirectory("pipeline-").toFile();
+        List<String> args = new VideoProcessingPipeline(Paths.get("/tmp/video.mp4"), probeResult(false))
+                .withFrames(1.0)
+                .withAudio()
+                .buildArguments(outDir);
+
+        Assert.assertEquals("[0:v:0]fps=1.0[v0]", args.get(args.indexOf("-filter_complex") + 1));
+        Assert.assertFalse(args.contains("0:a:0"));
+    }
+
+    @Test
+    public void testKeyframeSamplingArguments() throws Exception {
+        File outDir = Files.createTempDirectory("pipeline-").toFile();
+        List<String> args = new VideoProcessingPipeline(Paths.get("/tmp/video.mp4"), probeResult(false))
+                .withFrames(FrameSampling.keyframes())
+                .buildArguments(outDir);
+
+        Assert.assertEquals(Arrays.asList("-skip_frame", "nokey", "-i"), args.subList(3, 6));
+        Assert.assertEquals("[0:v:0]settb=1/1000[v0]", args.get(args.indexOf("-filter_complex") + 1));
+        Assert.assertEquals("1", args.get(args.indexOf("-frame_pts") + 1));
+        Assert.assertEquals("vfr", args.get(args.indexOf("-vsync") + 1));
+    }
+
+    private static FFmpegProbeResult probeResult(boolean withAudio) {
+        FFmpegProbeResult result = new FFmpegProbeResult();
+        result.format = new FFmpegFormat();
+        result.format.duration = 30.0;
+        result.streams = new ArrayList<>();
+        FFmpegStream video = new FFmpegStream();
+        video.codec_type = FFmpegStream.CodecType.VIDEO;
+        result.streams.add(video);
+        if (withAudio) {
+            FFmpegStream audio = new FFmpegStream();
+            audio.codec_type = FFmpegStream.CodecType.AUDIO;
+            result.streams.add(audio);
+        }
+        return result;
+    }
+}
@@ -46,6 +46,7 @@ import com.google.inject.Inject;
 import com.mware.bigconnect.ffmpeg.AVMediaInfo;
 import com.mware.bigconnect.ffmpeg.AVUtils;
 import com.mware.bigconnect.ffmpeg.AudioFormat;
+import com.mware.bigconnect.ffmpeg.FFmpegInput;
 import com.mware.bigconnect.ffmpeg.VideoFormat;
 import com.mware.core.config.Configuration;
 import com.mware.core.ingest.dataworker.DataWorker;
@@ -69,10 +70,8 @@ import net.bramp.ffmpeg.builder.FFmpegBuilder;
 import net.bramp.ffmpeg.job.FFmpegJob;
 import net.bramp.ffmpeg.probe.FFmpegProbeResult;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -185,19 +184,18 @@ public class SpeechToTextDataWorker extends DataWorker {
     }
 
     private Path createFlac(Vertex vertex, Path folder) throws IOException {
-        Path videoFile = Files.createFile(folder.resolve(S2TConstants.TEMP_VIDEO_NAME));
         Path finalFile = folder.resolve(S2TConstants.TEMP_FLAC_NAME);
 
         StreamingPropertyValue spv = BcSchema.RAW.getPropertyValue(vertex);
-        IOUtils.copyLarge(spv.getInputStream(), new FileOutputStream(videoFile.toFile()));
-
-        FFmpegBuilder builder = new FFmpegBuilder();
-        builder.addInput(videoFile.toAbsolutePath().toString());
-        builder.addOutput(finalFile.toAbsolutePath().toString());
-
-        FFmpegExecutor executor = new FFmpegExecutor(AVUtils.ffmpeg());
-        FFmpegJob job = executor.createJob(builder);
-        job.run();
+        try (FFmpegInput input = FFmpegInput.of(spv)) {
+            FFmpegBuilder builder = new FFmpegBuilder();
+            builder.addInput(input.getUrl());
+            builder.addOutput(finalFile.toAbsolutePath().toString());
+
+            FFmpegExecutor executor = new FFmpegExecutor(AVUtils.ffmpeg(input.processFunction()));
+            FFmpegJob job = executor.createJob(builder);
+            job.run();
+        }
 
         return finalFile;
     }
@@ -102,7 +102,7 @@ public class GoogleTranslateDataWorker extends DataWorker {
                 "No translations supported for language: " + targetLanguage);
 
         locationName = LocationName.of(GoogleCredentialUtils.getProjectId(), "global");
-        this.languageDetector = new LanguageDetectorUtil();
+        this.languageDetector = LanguageDetectorUtil.getInstance();
     }
 
     @Override
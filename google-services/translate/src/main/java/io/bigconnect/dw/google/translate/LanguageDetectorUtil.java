@@ -4,30 +4,40 @@ import com.google.common.base.Optional;
 import com.optimaize.langdetect.LanguageDetectorBuilder;
 import com.optimaize.langdetect.i18n.LdLocale;
 import com.optimaize.langdetect.ngram.NgramExtractors;
-import com.optimaize.langdetect.profiles.LanguageProfile;
 import com.optimaize.langdetect.profiles.LanguageProfileReader;
 import com.optimaize.langdetect.text.CommonTextObjectFactories;
 import com.optimaize.langdetect.text.TextObject;
 import com.optimaize.langdetect.text.TextObjectFactory;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.List;
+import java.io.IOException;
 
+/**
+ * Thread-safe and shared by all the workers of the process: see io.bigconnect.dw.text.language.LanguageDetectorUtil
+ */
 public class LanguageDetectorUtil {
-    private com.optimaize.langdetect.LanguageDetector languageDetector;
+    private static LanguageDetectorUtil instance;
 
-    public LanguageDetectorUtil() throws Exception {
-        List<LanguageProfile> languageProfiles = new LanguageProfileReader().readAllBuiltIn();
+    private final com.optimaize.langdetect.LanguageDetector languageDetector;
+    private final TextObjectFactory textObjectFactory = CommonTextObjectFactories.forDetectingOnLargeText();
+
+    private LanguageDetectorUtil() throws IOException {
         languageDetector = LanguageDetectorBuilder.create(NgramExtractors.standard())
-                .withProfiles(languageProfiles)
+                .withProfiles(new LanguageProfileReader().readAllBuiltIn())
                 .build();
     }
 
-    synchronized Optional<String> detectLanguage(String text) {
+    public static synchronized LanguageDetectorUtil getInstance() throws IOException {
+        if (instance == null) {
+            instance = new LanguageDetectorUtil();
+        }
+        return instance;
+    }
+
+    Optional<String> detectLanguage(String text) {
         if (StringUtils.isEmpty(text))
             return Optional.absent();
 
-        TextObjectFactory textObjectFactory = CommonTextObjectFactories.forDetectingOnLargeText();
         TextObject textObject = textObjectFactory.forText(text);
         Optional<LdLocale> lang = languageDetector.detect(textObject);
         return lang.transform(LdLocale::getLanguage);
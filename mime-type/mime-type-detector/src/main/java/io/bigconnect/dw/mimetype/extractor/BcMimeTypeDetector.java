@@ -40,31 +40,56 @@ import com.mware.core.exception.BcException;
 import com.mware.core.util.BcLogger;
 import com.mware.core.util.BcLoggerFactory;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.tika.detect.DefaultDetector;
 import org.apache.tika.detect.Detector;
+import org.apache.tika.io.TemporaryResources;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.net.URLConnection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Detects mime types from the file name if possible, otherwise in two stages: Tika's detectors first only
+ * see a bounded prefix of the content, and only when that yields a generic container type (ZIP, OOXML,
+ * OLE, Ogg) and the content is longer than the prefix are the container detectors run on the whole stream.
+ * As the {@link Detector} contract requires, the stream must support mark and reset and is reset to where it
+ * was once the type is detected.
+ */
 public class BcMimeTypeDetector implements Detector {
     private static final BcLogger LOGGER = BcLoggerFactory.getLogger(BcMimeTypeDetector.class);
     public static final String EXT_TO_MIME_TYPE_MAPPING_FILE = "extToMimeTypeMapping.txt";
     public static final String METADATA_FILENAME = "fileName";
+    public static final int DEFAULT_PREFIX_SIZE = 64 * 1024;
+    private static final Set<MediaType> CONTAINER_TYPES = new HashSet<>(Arrays.asList(
+            MediaType.APPLICATION_ZIP,
+            MediaType.application("x-tika-ooxml"),
+            MediaType.application("x-tika-ooxml-protected"),
+            MediaType.application("x-tika-msoffice"),
+            MediaType.application("ogg")
+    ));
     private final DefaultDetector defaultDetector;
+    private final int prefixSize;
     private static final Map<String, String> extToMimeTypeMapping = loadExtToMimeTypeMappingFile();
 
+    private final AtomicLong prefixDetections = new AtomicLong();
+    private final AtomicLong prefixDetectionNanos = new AtomicLong();
+    private final AtomicLong containerDetections = new AtomicLong();
+    private final AtomicLong containerDetectionNanos = new AtomicLong();
+
     public BcMimeTypeDetector() {
-        defaultDetector = new DefaultDetector();
+        this(DEFAULT_PREFIX_SIZE);
+    }
+
+    public BcMimeTypeDetector(int prefixSize) {
+        this.defaultDetector = new DefaultDetector();
+        this.prefixSize = prefixSize;
     }
 
     @Override
@@ -82,7 +107,70 @@ public class BcMimeTypeDetector implements Detector {
             }
         }
 
-        return defaultDetector.detect(TikaInputStream.get(input), metadata);
+        if (input == null) {
+            return defaultDetector.detect(null, metadata);
+        }
+
+        if (!input.markSupported()) {
+            throw new IllegalArgumentException("The input stream must support mark and reset");
+        }
+
+        long start = System.nanoTime();
+        byte[] prefix = new byte[prefixSize];
+        int prefixLength;
+        input.mark(prefixSize);
+        try {
+            prefixLength = IOUtils.read(input, prefix);
+        } finally {
+            input.reset();
+        }
+        MediaType mediaType;
+        try (TemporaryResources tmp = new TemporaryResources()) {
+            // detectors that need a file spool the prefix into tmp
+            mediaType = defaultDetector.detect(TikaInputStream.get(new ByteArrayInputStream(prefix, 0, prefixLength), tmp), metadata);
+        }
+        long prefixNanos = System.nanoTime() - start;
+        prefixDetections.incrementAndGet();
+        prefixDetectionNanos.addAndGet(prefixNanos);
+
+        if (prefixLength < prefixSize || !CONTAINER_TYPES.contains(mediaType)) {
+            LOGGER.debug("detected %s from %d byte prefix in %dus", mediaType, prefixLength, prefixNanos / 1000);
+            return mediaType;
+        }
+
+        start = System.nanoTime();
+        if (input instanceof TikaInputStream) {
+            // the Tika detectors mark and reset a TikaInputStream themselves, spooling it to a file if they need to
+            mediaType = defaultDetector.detect(input, metadata);
+        } else {
+            input.mark(Integer.MAX_VALUE);
+            try (TemporaryResources tmp = new TemporaryResources()) {
+                mediaType = defaultDetector.detect(TikaInputStream.get(input, tmp), metadata);
+            } finally {
+                input.reset();
+            }
+        }
+        long containerNanos = System.nanoTime() - start;
+        containerDetections.incrementAndGet();
+        containerDetectionNanos.addAndGet(containerNanos);
+        LOGGER.debug("detected %s by inspecting the container in %dus (prefix stage %dus)", mediaType, containerNanos / 1000, prefixNanos / 1000);
+        return mediaType;
+    }
+
+    public long getPrefixDetections() {
+        return prefixDetections.get();
+    }
+
+    public long getPrefixDetectionNanos() {
+        return prefixDetectionNanos.get();
+    }
+
+    public long getContainerDetections() {
+        return containerDetections.get();
+    }
+
+    public long getContainerDetectionNanos() {
+        return containerDetectionNanos.get();
     }
 
     private static Map<String, String> loadExtToMimeTypeMappingFile() {
@@ -48,6 +48,8 @@ import java.io.InputStream;
 @Name("Tika MIME Type")
 @Description("Uses Apache Tika to determine MIME type")
 public class TikaMimeTypeDataWorker extends MimeTypeDataWorker {
+    public static final String CONFIG_PREFIX_SIZE = "mime-type.detector.prefix-size";
+
     private TikaMimeTypeMapper mimeTypeMapper;
 
     @Inject
@@ -58,7 +60,8 @@ public class TikaMimeTypeDataWorker extends MimeTypeDataWorker {
     @Override
     public void prepare(DataWorkerPrepareData workerPrepareData) throws Exception {
         super.prepare(workerPrepareData);
-        mimeTypeMapper = new TikaMimeTypeMapper();
+        mimeTypeMapper = new TikaMimeTypeMapper(
+                getConfiguration().getInt(CONFIG_PREFIX_SIZE, BcMimeTypeDetector.DEFAULT_PREFIX_SIZE));
     }
 
     public String getMimeType(InputStream in, String fileName) throws Exception {
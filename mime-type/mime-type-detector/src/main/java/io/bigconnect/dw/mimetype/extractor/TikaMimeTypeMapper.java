@@ -36,23 +36,39 @@
  */
 package io.bigconnect.dw.mimetype.extractor;
 
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
 
-import java.io.BufferedInputStream;
 import java.io.InputStream;
 
 public class TikaMimeTypeMapper {
     private final BcMimeTypeDetector detector;
 
     public TikaMimeTypeMapper() {
-        detector = new BcMimeTypeDetector();
+        this(BcMimeTypeDetector.DEFAULT_PREFIX_SIZE);
+    }
+
+    public TikaMimeTypeMapper(int prefixSize) {
+        detector = new BcMimeTypeDetector(prefixSize);
     }
 
     public String guessMimeType(InputStream in, String fileName) throws Exception {
         Metadata metadata = new Metadata();
         metadata.set(BcMimeTypeDetector.METADATA_FILENAME, fileName);
-        MediaType mediaType = detector.detect(new BufferedInputStream(in), metadata);
+        MediaType mediaType;
+        if (in == null) {
+            mediaType = detector.detect(null, metadata);
+        } else {
+            // a TikaInputStream can be reset and spools to a file if the whole content has to be inspected
+            TemporaryResources tmp = new TemporaryResources();
+            try {
+                mediaType = detector.detect(TikaInputStream.get(in, tmp), metadata);
+            } finally {
+                tmp.dispose();
+            }
+        }
         String mimeType = mediaType.toString();
         if (mimeType != null) {
             return mimeType;
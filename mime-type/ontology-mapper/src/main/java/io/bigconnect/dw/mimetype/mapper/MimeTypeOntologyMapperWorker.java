@@ -57,8 +57,10 @@ import com.mware.ge.mutation.VertexMutation;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 @Name("MIME Type Ontology Mapper")
@@ -70,12 +72,16 @@ public class MimeTypeOntologyMapperWorker extends DataWorker {
     public static final String MAPPING_IRI_KEY = "iri";
     public static final String MAPPING_REGEX_KEY = "regex";
     private Concept defaultConcept;
+    private static final int MAX_MEMOIZED_MIME_TYPES = 10000;
     private List<MimeTypeMatcher> mimeTypeMatchers = new ArrayList<>();
+    private CompiledMimeTypeMatchers compiledMatchers;
+    private final Map<String, Integer> memoizedMatches = new ConcurrentHashMap<>();
 
     @Override
     public void prepare(DataWorkerPrepareData workerPrepareData) throws Exception {
         super.prepare(workerPrepareData);
         loadMappings();
+        compiledMatchers = new CompiledMimeTypeMatchers(mimeTypeMatchers);
         logMappings();
     }
 
@@ -128,11 +134,9 @@ public class MimeTypeOntologyMapperWorker extends DataWorker {
         String mimeType = BcSchema.MIME_TYPE.getOnlyPropertyValue(data.getElement());
         Concept concept = null;
 
-        for (MimeTypeMatcher matcher : this.mimeTypeMatchers) {
-            if (matcher.matches(mimeType)) {
-                concept = matcher.getConcept();
-                break;
-            }
+        int matcherIndex = findMatcher(mimeType);
+        if (matcherIndex >= 0) {
+            concept = mimeTypeMatchers.get(matcherIndex).getConcept();
         }
 
         if (concept == null) {
@@ -165,6 +169,17 @@ public class MimeTypeOntologyMapperWorker extends DataWorker {
         );
     }
 
+    private int findMatcher(String mimeType) {
+        Integer matcherIndex = memoizedMatches.get(mimeType);
+        if (matcherIndex == null) {
+            matcherIndex = compiledMatchers.find(mimeType);
+            if (memoizedMatches.size() < MAX_MEMOIZED_MIME_TYPES) {
+                memoizedMatches.put(mimeType, matcherIndex);
+            }
+        }
+        return matcherIndex;
+    }
+
     @Override
     public boolean isHandled(Element element, Property property) {
         if (property == null) {
@@ -203,10 +218,40 @@ public class MimeTypeOntologyMapperWorker extends DataWorker {
 
     private static class RegexMimeTypeMatcher extends MimeTypeMatcher {
         private final Pattern regex;
+        // the literal the regex matches, if it is one, and whether it only has to be a prefix
+        private final String literal;
+        private final boolean prefix;
 
         RegexMimeTypeMatcher(Concept concept, String regex) {
             super(concept);
             this.regex = Pattern.compile(regex);
+
+            boolean prefix = regex.endsWith(".*") && !regex.endsWith("\\.*");
+            String literal = toLiteral(prefix ? regex.substring(0, regex.length() - 2) : regex);
+            this.literal = literal;
+            this.prefix = literal != null && prefix;
+        }
+
+        /**
+         * @return the text the regex matches literally, or null if it uses any regex construct beyond
+         * escaped punctuation
+         */
+        private static String toLiteral(String regex) {
+            StringBuilder literal = new StringBuilder(regex.length());
+            for (int i = 0; i < regex.length(); i++) {
+                char c = regex.charAt(i);
+                if (c == '\\') {
+                    if (++i == regex.length() || Character.isLetterOrDigit(regex.charAt(i))) {
+                        return null;
+                    }
+                    literal.append(regex.charAt(i));
+                } else if (Character.isLetterOrDigit(c) || c == '/' || c == '-' || c == '_' || c == ';' || c == '=' || c == ' ') {
+                    literal.append(c);
+                } else {
+                    return null;
+                }
+            }
+            return literal.toString();
         }
 
         @Override
@@ -222,4 +267,76 @@ public class MimeTypeOntologyMapperWorker extends DataWorker {
                     '}';
         }
     }
+
+    /**
+     * Matchers whose regex is a plain literal go into a hash table, literal prefixes followed by ".*" go into a
+     * trie, and only the rest are run as regexes. The first configured matcher that matches still wins: a
+     * regex is only tried when it comes before the best exact or prefix match.
+     */
+    private static class CompiledMimeTypeMatchers {
+        private final Map<String, Integer> exact = new HashMap<>();
+        private final PrefixNode prefixes = new PrefixNode();
+        private final List<Integer> regexIndexes = new ArrayList<>();
+        private final List<MimeTypeMatcher> matchers;
+
+        CompiledMimeTypeMatchers(List<MimeTypeMatcher> matchers) {
+            this.matchers = matchers;
+            for (int i = 0; i < matchers.size(); i++) {
+                MimeTypeMatcher matcher = matchers.get(i);
+                RegexMimeTypeMatcher regexMatcher = matcher instanceof RegexMimeTypeMatcher ? (RegexMimeTypeMatcher) matcher : null;
+                if (regexMatcher == null || regexMatcher.literal == null) {
+                    regexIndexes.add(i);
+                } else if (regexMatcher.prefix) {
+                    prefixes.add(regexMatcher.literal, i);
+                } else {
+                    exact.putIfAbsent(regexMatcher.literal, i);
+                }
+            }
+        }
+
+        /**
+         * @return the index of the first matcher that matches, or -1
+         */
+        int find(String mimeType) {
+            int best = exact.getOrDefault(mimeType, Integer.MAX_VALUE);
+            best = Math.min(best, prefixes.find(mimeType));
+            for (int regexIndex : regexIndexes) {
+                if (regexIndex > best) {
+                    break;
+                }
+                if (matchers.get(regexIndex).matches(mimeType)) {
+                    return regexIndex;
+                }
+            }
+            return best == Integer.MAX_VALUE ? -1 : best;
+        }
+    }
+
+    private static class PrefixNode {
+        private final Map<Character, PrefixNode> children = new HashMap<>();
+        private int matcherIndex = Integer.MAX_VALUE;
+
+        void add(String prefix, int index) {
+            PrefixNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new PrefixNode());
+            }
+            node.matcherIndex = Math.min(node.matcherIndex, index);
+        }
+
+        /**
+         * @return the lowest matcher index of all prefixes of the text, or Integer.MAX_VALUE
+         */
+        int find(String text) {
+            PrefixNode node = this;
+            int best = node.matcherIndex;
+            for (int i = 0; i < text.length() && node != null; i++) {
+                node = node.children.get(text.charAt(i));
+                if (node != null) {
+                    best = Math.min(best, node.matcherIndex);
+                }
+            }
+            return best;
+        }
+    }
 }
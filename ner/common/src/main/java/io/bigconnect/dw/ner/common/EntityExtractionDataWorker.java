@@ -38,6 +38,7 @@ package io.bigconnect.dw.ner.common;
 
 import com.bericotech.clavin.resolver.ResolvedLocation;
 import com.google.inject.Inject;
+import com.mware.core.exception.BcException;
 import com.mware.core.ingest.dataworker.DataWorker;
 import com.mware.core.ingest.dataworker.DataWorkerData;
 import com.mware.core.ingest.dataworker.DataWorkerPrepareData;
@@ -52,6 +53,7 @@ import com.mware.core.util.BcLogger;
 import com.mware.core.util.BcLoggerFactory;
 import com.mware.ge.*;
 import com.mware.ge.mutation.ElementMutation;
+import com.mware.ge.mutation.ExistingElementMutation;
 import com.mware.ge.query.Compare;
 import com.mware.ge.query.QueryResultsIterable;
 import com.mware.ge.query.builder.GeQueryBuilder;
@@ -65,7 +67,11 @@ import io.bigconnect.dw.ner.common.extractor.OrganizationOccurrence;
 import io.bigconnect.dw.ner.common.extractor.PersonOccurrence;
 import io.bigconnect.dw.ner.common.orgs.ResolvedOrganization;
 import io.bigconnect.dw.ner.common.people.ResolvedPerson;
+import io.bigconnect.dw.text.common.LanguageSpans;
 import io.bigconnect.dw.text.common.NerUtils;
+import io.bigconnect.dw.text.common.ParagraphDiff;
+import io.bigconnect.dw.text.common.ParagraphIndex;
+import io.bigconnect.dw.text.common.TextSpan;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
@@ -73,13 +79,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class EntityExtractionDataWorker extends DataWorker {
     private static final BcLogger LOGGER = BcLoggerFactory.getLogger(EntityExtractionDataWorker.class);
+    public static final String CONFIG_INCREMENTAL = "entity.extractor.incremental";
+    public static final String CONFIG_SPAN_THREADS = "entity.extractor.span-threads";
+    private static final String PARAGRAPH_INDEX_TYPE = "ent";
+    private static final Set<String> TERM_MENTION_TYPES = new HashSet<>(Arrays.asList("", "ent"));
+    private static final String TERM_MENTION_PROCESS = EntityExtractionDataWorker.class.getName();
+    private static final Map<Integer, ExecutorService> SPAN_EXECUTORS = new HashMap<>();
 
     private TermMentionRepository termMentionRepository;
     private TermMentionUtils termMentionUtils;
     boolean resolveUnknownEntities;
+    boolean incremental;
+    private ExecutorService spanExecutor;
 
     @Inject
     public EntityExtractionDataWorker(TermMentionRepository termMentionRepository) {
@@ -90,6 +109,8 @@ public class EntityExtractionDataWorker extends DataWorker {
     public void prepare(DataWorkerPrepareData workerPrepareData) throws Exception {
         super.prepare(workerPrepareData);
         this.resolveUnknownEntities = getConfiguration().getBoolean("entity.extractor.resolve-unknown", false);
+        this.incremental = getConfiguration().getBoolean(CONFIG_INCREMENTAL, false);
+        this.spanExecutor = getSpanExecutor(getConfiguration().getInt(CONFIG_SPAN_THREADS, Runtime.getRuntime().availableProcessors()));
         this.termMentionUtils = new TermMentionUtils(getGraph(), getVisibilityTranslator(), getAuthorizations(), getUser());
     }
 
@@ -134,17 +155,24 @@ public class EntityExtractionDataWorker extends DataWorker {
 
         try {
             Vertex outVertex = (Vertex) refresh(data.getElement());
+            LanguageSpans languageSpans = LanguageSpans.fromProperty(textProperty);
+
+            if (incremental) {
+                extractChangedParagraphs(outVertex, textProperty, language, languageSpans, text);
+                pushTextUpdated(data);
+                return;
+            }
+
+            if (languageSpans != null && languageSpans.isMultilingual()) {
+                extractLanguageSpans(outVertex, textProperty, languageSpans, text);
+                pushTextUpdated(data);
+                return;
+            }
 
             NerUtils.removeEntityTermMentions(outVertex, termMentionRepository, termMentionUtils, getGraph(), getAuthorizations());
             ExtractedEntities entities = ParseManager.extractAndResolve(getConfiguration(), language, text);
             if (entities != null) {
-                VisibilityJson tmVisibilityJson = new VisibilityJson();
-                tmVisibilityJson.setSource("");
-
-                addLocations(outVertex, textProperty, tmVisibilityJson, entities);
-                addPersons(outVertex, textProperty, tmVisibilityJson, entities);
-                addOrganizations(outVertex, textProperty, tmVisibilityJson, entities);
-                addOtherEntities(outVertex, textProperty, tmVisibilityJson, entities);
+                addEntities(outVertex, textProperty, entities, 0);
                 getGraph().flush();
 
                 pushTextUpdated(data);
@@ -156,13 +184,115 @@ public class EntityExtractionDataWorker extends DataWorker {
         }
     }
 
-    private List<Vertex> addLocations(Vertex outVertex, Property property, VisibilityJson visibilityJson, ExtractedEntities entities) {
+    /**
+     * Extracts entities only from the paragraphs that changed since the last run. Term mentions of modified or
+     * removed paragraphs are deleted, the ones of unchanged paragraphs are kept and moved to their new offsets.
+     * Only the term mentions created by this worker are touched, and the detected entity relations that are no
+     * longer backed by a term mention are removed once the changed paragraphs are extracted again.
+     */
+    private void extractChangedParagraphs(Vertex outVertex, Property textProperty, String language, LanguageSpans languageSpans, String text) throws Exception {
+        List<TextSpan> paragraphs = NerUtils.getParagraphs(text);
+        List<TextSpan> changedParagraphs = paragraphs;
+        ParagraphIndex previousIndex = ParagraphIndex.read(outVertex, PARAGRAPH_INDEX_TYPE, textProperty.getKey());
+        if (previousIndex == null) {
+            NerUtils.removeEntityTermMentions(outVertex, termMentionRepository, termMentionUtils, getGraph(), getAuthorizations());
+        } else {
+            ParagraphDiff diff = previousIndex.diff(paragraphs);
+            NerUtils.removeChangedTermMentions(outVertex, textProperty, diff, TERM_MENTION_TYPES, TERM_MENTION_PROCESS,
+                    termMentionRepository, getGraph(), getAuthorizations());
+            changedParagraphs = diff.getChangedParagraphs();
+        }
+
+        for (TextSpan paragraph : changedParagraphs) {
+            String paragraphLanguage = languageSpans == null ? null : languageSpans.getLanguageAt(paragraph.getStart());
+            ExtractedEntities entities = ParseManager.extractAndResolve(getConfiguration(),
+                    paragraphLanguage == null ? language : paragraphLanguage, paragraph.getText());
+            if (entities != null) {
+                addEntities(outVertex, textProperty, entities, paragraph.getStart());
+            }
+        }
+        getGraph().flush();
+        if (previousIndex != null) {
+            NerUtils.removeUnusedHasDetectedEntityRelations(outVertex, termMentionRepository, getGraph(), getAuthorizations());
+        }
+
+        ParagraphIndex index = ParagraphIndex.empty();
+        paragraphs.forEach(p -> index.add(p, null));
+        ElementMutation<Vertex> m = outVertex.prepareMutation();
+        index.write(m, PARAGRAPH_INDEX_TYPE, textProperty.getKey(), getVisibilityTranslator().getDefaultVisibility());
+        m.save(getAuthorizations());
+        getGraph().flush();
+    }
+
+    /**
+     * Extracts the entities of a mixed-language text, each language span with the extractors of its own language.
+     * The spans are extracted in parallel on the pool of {@link #CONFIG_SPAN_THREADS} threads shared by the workers
+     * of the process, and their entities are saved in document order.
+     */
+    private void extractLanguageSpans(Vertex outVertex, Property textProperty, LanguageSpans languageSpans, String text) {
+        NerUtils.removeEntityTermMentions(outVertex, termMentionRepository, termMentionUtils, getGraph(), getAuthorizations());
+
+        List<LanguageSpans.Span> spans = languageSpans.getSpans();
+        List<Future<ExtractedEntities>> spanEntities = new ArrayList<>();
+        for (LanguageSpans.Span span : spans) {
+            int start = Math.min(span.getStart(), text.length());
+            int end = Math.min(span.getEnd(), text.length());
+            spanEntities.add(spanExecutor.submit(() -> ParseManager.extractAndResolve(getConfiguration(), span.getLanguage(), text.substring(start, end))));
+        }
+
+        try {
+            for (int i = 0; i < spans.size(); i++) {
+                ExtractedEntities entities = getSpanEntities(spans.get(i), spanEntities.get(i));
+                if (entities != null) {
+                    addEntities(outVertex, textProperty, entities, spans.get(i).getStart());
+                }
+            }
+        } finally {
+            spanEntities.forEach(f -> f.cancel(true));
+        }
+        getGraph().flush();
+    }
+
+    private ExtractedEntities getSpanEntities(LanguageSpans.Span span, Future<ExtractedEntities> entities) {
+        try {
+            return entities.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BcException("Interrupted while extracting entities", e);
+        } catch (ExecutionException e) {
+            LOGGER.error("Error extracting entities for language " + span.getLanguage() + ": " + e.getCause().getMessage(), e.getCause());
+            return null;
+        }
+    }
+
+    private static synchronized ExecutorService getSpanExecutor(int threads) {
+        return SPAN_EXECUTORS.computeIfAbsent(threads, key -> {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "entity-extractor-spans-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        });
+    }
+
+    private void addEntities(Vertex outVertex, Property textProperty, ExtractedEntities entities, int offset) {
+        VisibilityJson tmVisibilityJson = new VisibilityJson();
+        tmVisibilityJson.setSource("");
+
+        addLocations(outVertex, textProperty, tmVisibilityJson, entities, offset);
+        addPersons(outVertex, textProperty, tmVisibilityJson, entities, offset);
+        addOrganizations(outVertex, textProperty, tmVisibilityJson, entities, offset);
+        addOtherEntities(outVertex, textProperty, tmVisibilityJson, entities, offset);
+    }
+
+    private List<Vertex> addLocations(Vertex outVertex, Property property, VisibilityJson visibilityJson, ExtractedEntities entities, int offset) {
         Set<String> alreadyResolvedMentions = new HashSet<>();
         List<Vertex> termMentions = new ArrayList<>();
 
         for (ResolvedLocation resolvedLocation : entities.getResolvedLocations()) {
             float confidence = resolvedLocation.getConfidence(); // low is good
-            int start = resolvedLocation.getLocation().getPosition();
+            int start = offset + resolvedLocation.getLocation().getPosition();
             int end = start + resolvedLocation.getLocation().getText().length();
             String name = resolvedLocation.getGeoname().getName();
 
@@ -170,16 +300,7 @@ public class EntityExtractionDataWorker extends DataWorker {
             if(alreadyResolvedMentions.contains(name))
                 continue;
 
-            Vertex termMention = termMentionUtils.createTermMention(
-                    outVertex,
-                    property.getKey(),
-                    property.getName(),
-                    name,
-                    SchemaConstants.CONCEPT_TYPE_LOCATION,
-                    start,
-                    end,
-                    visibilityJson
-            );
+            Vertex termMention = createTermMention(outVertex, property, name, SchemaConstants.CONCEPT_TYPE_LOCATION, start, end, visibilityJson);
             termMentions.add(termMention);
 
             Vertex resolvedToVertex = findExistingVertexWithConceptAndTitle(SchemaConstants.CONCEPT_TYPE_LOCATION, name);
@@ -201,7 +322,7 @@ public class EntityExtractionDataWorker extends DataWorker {
         return termMentions;
     }
 
-    private List<Vertex> addOrganizations(Vertex outVertex, Property property, VisibilityJson visibilityJson, ExtractedEntities entities) {
+    private List<Vertex> addOrganizations(Vertex outVertex, Property property, VisibilityJson visibilityJson, ExtractedEntities entities, int offset) {
         List<Vertex> termMentions = new ArrayList<>();
         Set<String> alreadyResolvedMentions = new HashSet<>();
         List<ResolvedOrganization> resolvedOrganizations = entities.getResolvedOrganizations();
@@ -209,23 +330,14 @@ public class EntityExtractionDataWorker extends DataWorker {
             String name = organization.getName();
             // resolve only the first occurence
             OrganizationOccurrence occurrence = organization.getOccurrences().get(0);
-            int start = occurrence.position;
+            int start = offset + occurrence.position;
             int end = start + occurrence.text.length();
 
             // create a single term mention for each resolved name
             if(alreadyResolvedMentions.contains(name))
                 continue;
 
-            Vertex termMention = termMentionUtils.createTermMention(
-                    outVertex,
-                    property.getKey(),
-                    property.getName(),
-                    name,
-                    SchemaConstants.CONCEPT_TYPE_ORGANIZATION,
-                    start,
-                    end,
-                    visibilityJson
-            );
+            Vertex termMention = createTermMention(outVertex, property, name, SchemaConstants.CONCEPT_TYPE_ORGANIZATION, start, end, visibilityJson);
             termMentions.add(termMention);
 
             Vertex resolvedToVertex = findExistingVertexWithConceptAndTitle(SchemaConstants.CONCEPT_TYPE_ORGANIZATION, name);
@@ -243,7 +355,7 @@ public class EntityExtractionDataWorker extends DataWorker {
         return termMentions;
     }
 
-    private List<Vertex> addPersons(Vertex outVertex, Property property, VisibilityJson visibilityJson, ExtractedEntities entities) {
+    private List<Vertex> addPersons(Vertex outVertex, Property property, VisibilityJson visibilityJson, ExtractedEntities entities, int offset) {
         Set<String> alreadyResolvedMentions = new HashSet<>();
         List<Vertex> termMentions = new ArrayList<>();
         List<ResolvedPerson> resolvedOrganizations = entities.getResolvedPeople();
@@ -251,23 +363,14 @@ public class EntityExtractionDataWorker extends DataWorker {
             String name = person.getName();
             // resolve only the first occurence
             PersonOccurrence occurrence = person.getOccurrences().get(0);
-            int start = occurrence.position;
+            int start = offset + occurrence.position;
             int end = start + occurrence.text.length();
 
             // create a single term mention for each resolved name
             if(alreadyResolvedMentions.contains(name))
                 continue;
 
-            Vertex termMention = termMentionUtils.createTermMention(
-                    outVertex,
-                    property.getKey(),
-                    property.getName(),
-                    name,
-                    SchemaConstants.CONCEPT_TYPE_PERSON,
-                    start,
-                    end,
-                    visibilityJson
-            );
+            Vertex termMention = createTermMention(outVertex, property, name, SchemaConstants.CONCEPT_TYPE_PERSON, start, end, visibilityJson);
             termMentions.add(termMention);
 
             Vertex resolvedToVertex = findExistingVertexWithConceptAndTitle(SchemaConstants.CONCEPT_TYPE_PERSON, name);
@@ -286,13 +389,13 @@ public class EntityExtractionDataWorker extends DataWorker {
         return termMentions;
     }
 
-    private List<Vertex> addOtherEntities(Vertex outVertex, Property property, VisibilityJson visibilityJson, ExtractedEntities entities) {
+    private List<Vertex> addOtherEntities(Vertex outVertex, Property property, VisibilityJson visibilityJson, ExtractedEntities entities, int offset) {
         Set<String> alreadyResolvedMentions = new HashSet<>();
         List<Vertex> termMentions = new ArrayList<>();
         List<GenericOccurrence> otherEntities = entities.getOtherEntities();
         for (GenericOccurrence entity : otherEntities) {
             String name = entity.text;
-            int start = entity.position;
+            int start = offset + entity.position;
             int end = start + name.length();
             String conceptType = entity.conceptType;
 
@@ -300,16 +403,7 @@ public class EntityExtractionDataWorker extends DataWorker {
             if(alreadyResolvedMentions.contains(name))
                 continue;
 
-            Vertex termMention = termMentionUtils.createTermMention(
-                    outVertex,
-                    property.getKey(),
-                    property.getName(),
-                    name,
-                    conceptType,
-                    start,
-                    end,
-                    visibilityJson
-            );
+            Vertex termMention = createTermMention(outVertex, property, name, conceptType, start, end, visibilityJson);
             termMentions.add(termMention);
 
             Vertex resolvedToVertex = findExistingVertexWithConceptAndTitle(conceptType, name);
@@ -327,6 +421,26 @@ public class EntityExtractionDataWorker extends DataWorker {
         return termMentions;
     }
 
+    /**
+     * Creates the term mention through {@link TermMentionUtils} and marks it as created by this worker, so the
+     * incremental extraction can tell it apart from the term mentions of other extractors.
+     */
+    private Vertex createTermMention(Vertex outVertex, Property property, String name, String conceptType, int start, int end, VisibilityJson visibilityJson) {
+        Vertex termMention = termMentionUtils.createTermMention(
+                outVertex,
+                property.getKey(),
+                property.getName(),
+                name,
+                conceptType,
+                start,
+                end,
+                visibilityJson
+        );
+        ExistingElementMutation<Vertex> m = termMention.prepareMutation();
+        BcSchema.TERM_MENTION_PROCESS.setProperty(m, TERM_MENTION_PROCESS, termMention.getVisibility());
+        return m.save(getAuthorizations());
+    }
+
     private Vertex findExistingVertexWithConceptAndTitle(String conceptType, String title) {
         GeQueryBuilder qb = GeQueryBuilders.boolQuery()
                 .and(GeQueryBuilders.hasConceptType(conceptType))
@@ -348,7 +462,7 @@ public class EntityExtractionDataWorker extends DataWorker {
         String edgeId = outVertex.getId() + "-" + SchemaConstants.EDGE_LABEL_HAS_DETECTED_ENTITY + "-" + resolvedToVertex.getId();
         Edge resolvedEdge = getGraph().prepareEdge(edgeId, outVertex, resolvedToVertex, SchemaConstants.EDGE_LABEL_HAS_DETECTED_ENTITY, outVertex.getVisibility())
                 .save(getAuthorizations());
-        String processId = getClass().getName();
+        String processId = TERM_MENTION_PROCESS;
 
         new TermMentionBuilder(termMention, outVertex)
                 .resolvedTo(resolvedToVertex, resolvedEdge)
@@ -80,7 +80,7 @@ public class ParseManager {
 
     private static final Logger logger = LoggerFactory.getLogger(ParseManager.class);
 
-    public static EntityParser parser = null;
+    public static volatile EntityParser parser = null;
 
     private static CliffLocationResolver resolver;   // HACK: pointer to keep around for stats logging
 
@@ -351,34 +351,45 @@ public class ParseManager {
     }
 
     /**
-     * Lazy instantiation of singleton parser
+     * Lazy instantiation of singleton parser. Workers call this concurrently, so the parser is created under a lock
+     * and published through the volatile field, together with the resolver and focus strategy set before it.
      */
     public static EntityParser getParserInstance(Configuration config) throws Exception {
-        if (parser == null) {
-            focusStrategy = new FrequencyOfMentionFocusStrategy(config);
-            // use the Stanford NER location stanford
-            EntityExtractorService extractor = EntityExtractorService.getInstance(config);
-            extractor.initialize(config);
-
-            boolean useFuzzyMatching = false;
-            Gazetteer gazetteer = null;
-            File gazetteerDir = new File(config.get(GEOINDEX_PATH, ""));
-            if (!gazetteerDir.exists() || !gazetteerDir.isDirectory()) {
-                logger.error("Missing gazetter! Download and build a CLAVIN IndexDirectory at " + config.get(GEOINDEX_PATH, ""));
-            } else {
-                logger.info("Loading CLAVIN Gazetteer from " + config.get(GEOINDEX_PATH, ""));
-                gazetteer = new LuceneGazetteer(new File(config.get(GEOINDEX_PATH, "")));
+        EntityParser instance = parser;
+        if (instance != null) {
+            return instance;
+        }
+        synchronized (ParseManager.class) {
+            if (parser == null) {
+                parser = createParser(config);
             }
+            return parser;
+        }
+    }
 
-            resolver = new CliffLocationResolver(gazetteer);
+    private static EntityParser createParser(Configuration config) throws Exception {
+        focusStrategy = new FrequencyOfMentionFocusStrategy(config);
+        // use the Stanford NER location stanford
+        EntityExtractorService extractor = EntityExtractorService.getInstance(config);
+        extractor.initialize(config);
+
+        boolean useFuzzyMatching = false;
+        Gazetteer gazetteer = null;
+        File gazetteerDir = new File(config.get(GEOINDEX_PATH, ""));
+        if (!gazetteerDir.exists() || !gazetteerDir.isDirectory()) {
+            logger.error("Missing gazetter! Download and build a CLAVIN IndexDirectory at " + config.get(GEOINDEX_PATH, ""));
+        } else {
+            logger.info("Loading CLAVIN Gazetteer from " + config.get(GEOINDEX_PATH, ""));
+            gazetteer = new LuceneGazetteer(new File(config.get(GEOINDEX_PATH, "")));
+        }
 
-            parser = new EntityParser(extractor, resolver,
-                    useFuzzyMatching, CliffLocationResolver.MAX_HIT_DEPTH);
+        resolver = new CliffLocationResolver(gazetteer);
 
-            logger.info("Created parser successfully");
-        }
+        EntityParser entityParser = new EntityParser(extractor, resolver,
+                useFuzzyMatching, CliffLocationResolver.MAX_HIT_DEPTH);
 
-        return parser;
+        logger.info("Created parser successfully");
+        return entityParser;
     }
 
     public static CliffLocationResolver getLocationResolver(Configuration configuration) throws Exception {
@@ -0,0 +1,178 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.ner.regex;
+
+import com.mware.core.model.regex.Regex;
+import com.mware.core.util.BcLogger;
+import com.mware.core.util.BcLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An immutable set of compiled regexes. In single-pass mode the regexes are also combined into one alternation,
+ * so the text is scanned once for all of them. The combined scan reports the leftmost match at each position and
+ * does not report matches of other regexes that overlap it, so it is an opt-in mode. Regexes with back-references
+ * can't be combined and are always matched on their own.
+ */
+class CompiledRegexes {
+    private static final BcLogger LOGGER = BcLoggerFactory.getLogger(CompiledRegexes.class);
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\([1-9]|k<)");
+
+    private final List<CompiledRegex> separate = new ArrayList<>();
+    private final List<CompiledRegex> combined = new ArrayList<>();
+    private final int[] combinedGroups;
+    private final Map<Regex, Boolean> combinedRegexes = new IdentityHashMap<>();
+    private Pattern combinedPattern;
+
+    CompiledRegexes(List<CompiledRegex> regexes, boolean singlePass) {
+        if (singlePass) {
+            for (CompiledRegex regex : regexes) {
+                if (BACK_REFERENCE.matcher(regex.pattern.pattern()).find()) {
+                    separate.add(regex);
+                } else {
+                    combined.add(regex);
+                }
+            }
+        } else {
+            separate.addAll(regexes);
+        }
+
+        combinedGroups = new int[combined.size()];
+        if (combined.size() > 1) {
+            StringBuilder union = new StringBuilder();
+            int group = 1;
+            for (int i = 0; i < combined.size(); i++) {
+                Pattern pattern = combined.get(i).pattern;
+                if (union.length() > 0) {
+                    union.append('|');
+                }
+                union.append('(').append(pattern.pattern()).append(')');
+                combinedGroups[i] = group;
+                group += 1 + pattern.matcher("").groupCount();
+            }
+            try {
+                combinedPattern = Pattern.compile(union.toString());
+            } catch (PatternSyntaxException e) {
+                LOGGER.warn("Could not combine the regexes, matching them one by one: " + e.getMessage());
+            }
+        }
+
+        if (combinedPattern == null) {
+            separate.addAll(combined);
+            combined.clear();
+        }
+        for (CompiledRegex regex : combined) {
+            combinedRegexes.put(regex.regex, Boolean.TRUE);
+        }
+    }
+
+    void findAll(CharSequence text, MatchConsumer consumer) {
+        findAll(text, 0, text.length(), consumer);
+    }
+
+    /**
+     * Finds the matches that lie within [from, to). The text outside the region is still visible to lookarounds
+     * and boundary matchers, and the region bounds don't match ^ and $.
+     */
+    void findAll(CharSequence text, int from, int to, MatchConsumer consumer) {
+        findAll(text, key -> from, to, consumer);
+    }
+
+    /**
+     * Same as {@link #findAll(CharSequence, int, int, MatchConsumer)}, with the start of the region given per
+     * {@link #overlapKey(Regex)}. A start past the end of the region finds nothing.
+     */
+    void findAll(CharSequence text, ToIntFunction<Object> from, int to, MatchConsumer consumer) {
+        for (CompiledRegex regex : separate) {
+            int start = from.applyAsInt(regex.regex);
+            if (start > to) {
+                continue;
+            }
+            Matcher matcher = region(regex.pattern.matcher(text), start, to);
+            while (matcher.find()) {
+                consumer.accept(regex.regex, matcher.start(), matcher.end(), matcher.group());
+            }
+        }
+
+        int start = from.applyAsInt(combinedRegexes);
+        if (combinedPattern != null && start <= to) {
+            Matcher matcher = region(combinedPattern.matcher(text), start, to);
+            while (matcher.find()) {
+                for (int i = 0; i < combinedGroups.length; i++) {
+                    if (matcher.start(combinedGroups[i]) != -1) {
+                        consumer.accept(combined.get(i).regex, matcher.start(), matcher.end(), matcher.group());
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Matches of the combined regexes exclude each other, so they share one key; every other regex is its own key.
+     */
+    Object overlapKey(Regex regex) {
+        return combinedRegexes.containsKey(regex) ? combinedRegexes : regex;
+    }
+
+    private static Matcher region(Matcher matcher, int from, int to) {
+        return matcher.region(from, to)
+                .useTransparentBounds(true)
+                .useAnchoringBounds(false);
+    }
+
+    interface MatchConsumer {
+        void accept(Regex regex, int start, int end, String value);
+    }
+
+    static class CompiledRegex {
+        final Regex regex;
+        final Pattern pattern;
+
+        CompiledRegex(Regex regex, Pattern pattern) {
+            this.regex = regex;
+            this.pattern = pattern;
+        }
+    }
+}
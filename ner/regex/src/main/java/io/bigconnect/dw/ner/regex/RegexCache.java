@@ -0,0 +1,104 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.ner.regex;
+
+import com.mware.core.model.regex.Regex;
+import com.mware.core.model.regex.RegexRepository;
+import com.mware.core.util.BcLogger;
+import com.mware.core.util.BcLoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Keeps the regexes of the {@link RegexRepository} compiled. The repository is checked at most once per refresh
+ * interval and a regex is compiled again only when its (id, pattern) pair is new.
+ */
+class RegexCache {
+    private static final BcLogger LOGGER = BcLoggerFactory.getLogger(RegexCache.class);
+
+    private final RegexRepository regexRepository;
+    private final long refreshInterval;
+    private final boolean singlePass;
+    private long lastRefreshTime;
+    private Map<String, Pattern> patterns = new HashMap<>();
+    private CompiledRegexes regexes;
+
+    RegexCache(RegexRepository regexRepository, long refreshInterval, boolean singlePass) {
+        this.regexRepository = regexRepository;
+        this.refreshInterval = refreshInterval;
+        this.singlePass = singlePass;
+    }
+
+    synchronized CompiledRegexes get() {
+        if (regexes == null || isReadyToRefresh()) {
+            refresh();
+        }
+        return regexes;
+    }
+
+    private boolean isReadyToRefresh() {
+        return lastRefreshTime + refreshInterval <= System.currentTimeMillis();
+    }
+
+    private void refresh() {
+        Map<String, Pattern> newPatterns = new HashMap<>();
+        List<CompiledRegexes.CompiledRegex> list = new ArrayList<>();
+        for (Regex regex : regexRepository.getAllRegexes()) {
+            String key = regex.getId() + ":" + regex.getPattern();
+            Pattern pattern = patterns.get(key);
+            if (pattern == null) {
+                try {
+                    pattern = Pattern.compile(regex.getPattern());
+                } catch (PatternSyntaxException e) {
+                    LOGGER.warn("Invalid regex %s: %s", regex.getId(), e.getMessage());
+                    continue;
+                }
+            }
+            newPatterns.put(key, pattern);
+            list.add(new CompiledRegexes.CompiledRegex(regex, pattern));
+        }
+
+        patterns = newPatterns;
+        regexes = new CompiledRegexes(list, singlePass);
+        lastRefreshTime = System.currentTimeMillis();
+    }
+}
@@ -37,7 +37,6 @@
 package io.bigconnect.dw.ner.regex;
 
 import com.google.common.base.Charsets;
-import com.google.common.io.CharStreams;
 import com.google.inject.Inject;
 import com.mware.core.ingest.dataworker.DataWorker;
 import com.mware.core.ingest.dataworker.DataWorkerData;
@@ -47,7 +46,6 @@ import com.mware.core.model.Description;
 import com.mware.core.model.Name;
 import com.mware.core.model.clientapi.dto.VisibilityJson;
 import com.mware.core.model.properties.BcSchema;
-import com.mware.core.model.regex.Regex;
 import com.mware.core.model.regex.RegexRepository;
 import com.mware.core.model.schema.SchemaConstants;
 import com.mware.core.model.termMention.TermMentionBuilder;
@@ -65,11 +63,8 @@ import com.mware.ontology.IgnoredMimeTypes;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.Reader;
+import java.util.*;
 
 import static com.mware.ge.query.builder.GeQueryBuilders.hasFilter;
 
@@ -77,7 +72,15 @@ import static com.mware.ge.query.builder.GeQueryBuilders.hasFilter;
 @Name("Regex Extractor")
 @Description("Extracts entities from text based on regexes")
 public class RegexExtractorWorker extends DataWorker {
+    public static final String CONFIG_REFRESH_INTERVAL_MS = "regex.extractor.refresh-interval-ms";
+    public static final int CONFIG_REFRESH_INTERVAL_MS_DEFAULT = 10000;
+    public static final String CONFIG_SINGLE_PASS = "regex.extractor.single-pass";
+    public static final String CONFIG_WINDOW_SIZE = "regex.extractor.window-size";
+    public static final String CONFIG_WINDOW_OVERLAP = "regex.extractor.window-overlap";
+
     private final RegexRepository regexRepository;
+    private RegexCache regexCache;
+    private StreamingRegexMatcher streamingMatcher;
     private TermMentionUtils termMentionUtils;
 
     private static final BcLogger LOGGER = BcLoggerFactory.getLogger(RegexDataWorker.class);
@@ -92,41 +95,40 @@ public class RegexExtractorWorker extends DataWorker {
     public void prepare(DataWorkerPrepareData workerPrepareData) throws Exception {
         super.prepare(workerPrepareData);
         LOGGER.debug("Extractor prepared ");
+        this.regexCache = new RegexCache(
+                regexRepository,
+                getConfiguration().getInt(CONFIG_REFRESH_INTERVAL_MS, CONFIG_REFRESH_INTERVAL_MS_DEFAULT),
+                getConfiguration().getBoolean(CONFIG_SINGLE_PASS, false)
+        );
+        this.streamingMatcher = new StreamingRegexMatcher(
+                getConfiguration().getInt(CONFIG_WINDOW_SIZE, 1024 * 1024),
+                getConfiguration().getInt(CONFIG_WINDOW_OVERLAP, 4096)
+        );
         this.termMentionUtils = new TermMentionUtils(getGraph(), getVisibilityTranslator(), getAuthorizations(), getUser());
     }
 
     @Override
     public void execute(InputStream in, DataWorkerData data) throws Exception {
-        Iterable<Regex> regexes = regexRepository.getAllRegexes();
+        CompiledRegexes regexes = regexCache.get();
         Vertex outVertex = (Vertex) data.getElement();
-        List<Vertex> termMentions = new ArrayList<>();
-        final String text = CharStreams.toString(new InputStreamReader(in, Charsets.UTF_8));
-
-        Iterator<Regex> regexIterator = regexes.iterator();
-        while (regexIterator.hasNext()) {
-            Regex currentRegex = regexIterator.next();
-
-            Pattern pattern = Pattern.compile(currentRegex.getPattern());
-            Matcher matcher = pattern.matcher(text);
-
-            while (matcher.find()) {
-                String patternGroup = matcher.group();
-                int start = matcher.start();
-                int end = matcher.end();
-
-                termMentions.add(termMentionUtils.createTermMention(
-                        outVertex,
-                        data.getProperty().getKey(),
-                        data.getProperty().getName(),
-                        patternGroup,
-                        currentRegex.getConcept(),
-                        start,
-                        end,
-                        data.getElementVisibilityJson()));
-            }
-        }
-
-        termMentionUtils.resolveTermMentions(outVertex, termMentions);
+        Reader reader = new InputStreamReader(in, Charsets.UTF_8);
+
+        // matches of the same value are resolved together
+        Map<String, List<Vertex>> termMentionsByValue = new LinkedHashMap<>();
+        streamingMatcher.findAll(reader, regexes, (regex, start, end, value) -> {
+            RegexMatch match = new RegexMatch(regex.getConcept(), value, start, end);
+            termMentionsByValue.computeIfAbsent(match.getGroupKey(), k -> new ArrayList<>()).add(termMentionUtils.createTermMention(
+                    outVertex,
+                    data.getProperty().getKey(),
+                    data.getProperty().getName(),
+                    match.getValue(),
+                    match.getConcept(),
+                    match.getStart(),
+                    match.getEnd(),
+                    data.getElementVisibilityJson()));
+        });
+
+        List<Vertex> termMentions = resolveTermMentions(outVertex, termMentionsByValue.values());
         applyTermMentionFilters(outVertex, termMentions);
         pushTextUpdated(data);
         getGraph().flush();
@@ -148,38 +150,49 @@ public class RegexExtractorWorker extends DataWorker {
                 !IgnoredMimeTypes.contains(BcSchema.MIME_TYPE.getFirstPropertyValue(element));
     }
 
-    public void resolveTermMentions(Vertex outVertex, List<Vertex> termMentions) {
-        VisibilityJson visibilityJson = new VisibilityJson();
-        visibilityJson.setSource("");
-
-        for (Vertex termMention : termMentions) {
-            String conceptType = BcSchema.TERM_MENTION_CONCEPT_TYPE.getPropertyValue(termMention);
-            String tmTitle = BcSchema.TERM_MENTION_TITLE.getPropertyValue(termMention);
-            VisibilityJson outVertexVisibilityJson = new VisibilityJson();
-            Metadata metadata = Metadata.create();
-            BcSchema.VISIBILITY_JSON_METADATA.setMetadata(metadata, outVertexVisibilityJson, getVisibilityTranslator().getDefaultVisibility());
-            if (tmTitle == null) {
-                continue;
-            }
-            Vertex resolvedToVertex = findExistingVertexWithTitle(tmTitle, getAuthorizations());
-            if(resolvedToVertex == null) {
-                ElementMutation<Vertex> vertexMutation = getGraph().prepareVertex(outVertex.getVisibility(), conceptType);
-                BcSchema.TITLE.addPropertyValue(vertexMutation, "NLP", tmTitle, metadata, outVertex.getVisibility());
-                resolvedToVertex = vertexMutation.save(getAuthorizations());
-            }
+    /**
+     * Resolves every term mention to the vertex with its title, through its own HAS_ENTITY edge. The title lookup,
+     * and the vertex creation when the title isn't found, happen once per group of term mentions with the same
+     * concept and value.
+     */
+    public List<Vertex> resolveTermMentions(Vertex outVertex, Collection<List<Vertex>> termMentionGroups) {
+        VisibilityJson outVertexVisibilityJson = new VisibilityJson();
+        Metadata metadata = Metadata.create();
+        BcSchema.VISIBILITY_JSON_METADATA.setMetadata(metadata, outVertexVisibilityJson, getVisibilityTranslator().getDefaultVisibility());
+        String processId = getClass().getName();
 
-            Edge resolvedEdge = getGraph().prepareEdge(outVertex, resolvedToVertex, SchemaConstants.EDGE_LABEL_HAS_ENTITY, outVertex.getVisibility()).save(getAuthorizations());
-
-            String processId = getClass().getName();
-            new TermMentionBuilder(termMention, outVertex)
-                    .resolvedTo(resolvedToVertex, resolvedEdge)
-                    .title(tmTitle)
-                    .conceptName(conceptType)
-                    .process(processId)
-                    .resolvedFromTermMention(null)
-                    .visibilityJson(BcSchema.TERM_MENTION_VISIBILITY_JSON.getPropertyValue(termMention, new VisibilityJson()))
-                    .save(getGraph(), getVisibilityTranslator(), getUser(), getAuthorizations());
+        List<Vertex> termMentions = new ArrayList<>();
+        for (List<Vertex> group : termMentionGroups) {
+            Vertex resolvedToVertex = null;
+            for (Vertex termMention : group) {
+                String conceptType = BcSchema.TERM_MENTION_CONCEPT_TYPE.getPropertyValue(termMention);
+                String tmTitle = BcSchema.TERM_MENTION_TITLE.getPropertyValue(termMention);
+                termMentions.add(termMention);
+                if (tmTitle == null) {
+                    continue;
+                }
+                if (resolvedToVertex == null) {
+                    resolvedToVertex = findExistingVertexWithTitle(tmTitle, getAuthorizations());
+                }
+                if (resolvedToVertex == null) {
+                    ElementMutation<Vertex> vertexMutation = getGraph().prepareVertex(outVertex.getVisibility(), conceptType);
+                    BcSchema.TITLE.addPropertyValue(vertexMutation, "NLP", tmTitle, metadata, outVertex.getVisibility());
+                    resolvedToVertex = vertexMutation.save(getAuthorizations());
+                }
+
+                Edge resolvedEdge = getGraph().prepareEdge(outVertex, resolvedToVertex, SchemaConstants.EDGE_LABEL_HAS_ENTITY, outVertex.getVisibility()).save(getAuthorizations());
+
+                new TermMentionBuilder(termMention, outVertex)
+                        .resolvedTo(resolvedToVertex, resolvedEdge)
+                        .title(tmTitle)
+                        .conceptName(conceptType)
+                        .process(processId)
+                        .resolvedFromTermMention(null)
+                        .visibilityJson(BcSchema.TERM_MENTION_VISIBILITY_JSON.getPropertyValue(termMention, new VisibilityJson()))
+                        .save(getGraph(), getVisibilityTranslator(), getUser(), getAuthorizations());
+            }
         }
+        return termMentions;
     }
 
     private Vertex findExistingVertexWithTitle(String title, Authorizations authorizations) {
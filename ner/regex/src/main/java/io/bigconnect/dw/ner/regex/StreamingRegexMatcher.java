@@ -0,0 +1,150 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.ner.regex;
+
+import com.mware.core.model.regex.Regex;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Matches regexes over a character stream using a sliding window, so only windowSize + 2 * overlap characters are
+ * held in memory at any time. Consecutive windows share overlap characters: a match is reported by the window in
+ * which it starts, so matches up to overlap characters long are found even if they cross a window boundary.
+ * Each window also keeps up to overlap characters before it as context, so word boundaries and lookbehinds at the
+ * start of a window see the preceding text. A match that runs into the end of the buffer may be cut short, so the
+ * next window starts at that match and finds it whole. Like {@link java.util.regex.Matcher#find()}, the search for a
+ * regex resumes where its previous match ended, so the matches are the same as over the whole text.
+ * Reported offsets are absolute offsets in the stream.
+ */
+class StreamingRegexMatcher {
+    private final int windowSize;
+    private final int overlap;
+
+    StreamingRegexMatcher(int windowSize, int overlap) {
+        checkArgument(windowSize > 0, "windowSize must be positive: %s", windowSize);
+        checkArgument(overlap >= 0, "overlap can't be negative: %s", overlap);
+        this.windowSize = windowSize;
+        this.overlap = overlap;
+    }
+
+    void findAll(Reader reader, CompiledRegexes regexes, CompiledRegexes.MatchConsumer consumer) throws IOException {
+        char[] buffer = new char[overlap + windowSize + overlap];
+        Map<Object, Long> resumeAt = new IdentityHashMap<>();
+        List<Match> matches = new ArrayList<>();
+        int context = 0;
+        int length = 0;
+        long bufferStart = 0;
+        boolean eof = false;
+
+        while (!eof) {
+            while (length < buffer.length) {
+                int read = reader.read(buffer, length, buffer.length - length);
+                if (read == -1) {
+                    eof = true;
+                    break;
+                }
+                length += read;
+            }
+
+            // matches starting in the overlap are left for the next window,
+            // the last window also reports an empty match at its end
+            final int boundary = eof ? length + 1 : length - overlap;
+            final boolean last = eof;
+            final int end = length;
+            final int from = context;
+            final long offset = bufferStart;
+            matches.clear();
+            regexes.findAll(CharBuffer.wrap(buffer, 0, length), key -> {
+                Long resume = resumeAt.get(key);
+                return resume == null ? from : (int) Math.max(from, Math.min(resume - offset, end + 1L));
+            }, length, (regex, start, matchEnd, value) -> {
+                if (start < boundary) {
+                    matches.add(new Match(regex, start, matchEnd, value));
+                }
+            });
+
+            // a match touching the end of the buffer may continue past it, the next window starts there
+            int next = boundary;
+            if (!last) {
+                for (Match match : matches) {
+                    if (match.end == end && match.start > context) {
+                        next = Math.min(next, match.start);
+                    }
+                }
+            }
+
+            for (Match match : matches) {
+                if (match.start >= next) {
+                    continue;
+                }
+                // the next search starts after the match, one character further for an empty match
+                resumeAt.put(regexes.overlapKey(match.regex), bufferStart + match.end + (match.start == match.end ? 1 : 0));
+                consumer.accept(match.regex, (int) (bufferStart + match.start), (int) (bufferStart + match.end), match.value);
+            }
+
+            if (!eof) {
+                context = Math.min(overlap, next);
+                int shift = next - context;
+                System.arraycopy(buffer, shift, buffer, 0, length - shift);
+                bufferStart += shift;
+                length -= shift;
+            }
+        }
+    }
+
+    private static class Match {
+        final Regex regex;
+        final int start;
+        final int end;
+        final String value;
+
+        Match(Regex regex, int start, int end, String value) {
+            this.regex = regex;
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.ner.regex;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingRegexMatcherTest {
+    @Test
+    public void testMatchesStraddlingWindowBoundaries() throws Exception {
+        String text = "call 555-1234 or 555-9876, fax 555-0000;555-1111 555-2222";
+        for (int windowSize = 1; windowSize <= text.length() + 1; windowSize++) {
+            assertSameMatches("\\d{3}-\\d{4}", text, windowSize, 8);
+        }
+    }
+
+    @Test
+    public void testLookbehindAndWordBoundaryAtWindowStart() throws Exception {
+        String text = "xfoo foo $12 foo,foox 3$45 $6 foo";
+        for (int windowSize = 1; windowSize <= text.length() + 1; windowSize++) {
+            assertSameMatches("\\bfoo\\b", text, windowSize, 4);
+            assertSameMatches("(?<=\\$)\\d+", text, windowSize, 4);
+            assertSameMatches("(?<![\\w$])\\d+", text, windowSize, 4);
+        }
+    }
+
+    @Test
+    public void testEmptyInput() throws Exception {
+        assertEquals(Collections.emptyList(), streamingMatches("\\w+", "", 4, 2));
+        assertSameMatches("\\w*", "", 4, 2);
+    }
+
+    @Test
+    public void testWindowsWithoutMatches() throws Exception {
+        StringBuilder text = new StringBuilder("id42");
+        for (int i = 0; i < 100; i++) {
+            text.append(" - ");
+        }
+        text.append("id7 ").append("id1234");
+        assertSameMatches("id\\d+", text.toString(), 5, 6);
+    }
+
+    @Test
+    public void testWindowSizeMustBePositive() {
+        try {
+            new StreamingRegexMatcher(0, 4);
+            fail("an empty window should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("windowSize"));
+        }
+    }
+
+    @Test
+    public void testInputShorterThanOneWindow() throws Exception {
+        String text = "ab 12 cd 345";
+        assertSameMatches("\\d+", text, 1024, 16);
+        assertSameMatches("\\b[a-z]+\\b", text, 1024, 0);
+        assertSameMatches("^ab", text, 1024, 16);
+        assertSameMatches("\\d+$", text, 1024, 16);
+    }
+
+    @Test
+    public void testRandomText() throws Exception {
+        String[] regexes = {"a+b", "\\bab?\\b", "(?<=b)a{1,3}", "[ab]{2}(?= )", "\\d\\d?", "a*"};
+        char[] alphabet = {'a', 'b', ' ', '1', '2'};
+        Random random = new Random(42);
+        for (int n = 0; n < 2000; n++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(60);
+            for (int i = 0; i < length; i++) {
+                // runs are kept shorter than the overlap, longer matches aren't guaranteed across windows
+                text.append(i % 8 == 7 ? ' ' : alphabet[random.nextInt(alphabet.length)]);
+            }
+            assertSameMatches(regexes[n % regexes.length], text.toString(), 1 + random.nextInt(12), 8);
+        }
+    }
+
+    private static void assertSameMatches(String regex, String text, int windowSize, int overlap) throws IOException {
+        assertEquals(regex + " in '" + text + "', window " + windowSize + ", overlap " + overlap,
+                wholeTextMatches(regex, text), streamingMatches(regex, text, windowSize, overlap));
+    }
+
+    private static List<String> wholeTextMatches(String regex, String text) {
+        List<String> matches = new ArrayList<>();
+        Matcher matcher = Pattern.compile(regex).matcher(text);
+        while (matcher.find()) {
+            matches.add(matcher.start() + "-" + matcher.end() + ":" + matcher.group());
+        }
+        return matches;
+    }
+
+    private static List<String> streamingMatches(String regex, String text, int windowSize, int overlap) throws IOException {
+        CompiledRegexes regexes = new CompiledRegexes(
+                Collections.singletonList(new CompiledRegexes.CompiledRegex(null, Pattern.compile(regex))), false);
+        List<String> matches = new ArrayList<>();
+        new StreamingRegexMatcher(windowSize, overlap).findAll(new ChunkedReader(text), regexes,
+                (r, start, end, value) -> matches.add(start + "-" + end + ":" + value));
+        return matches;
+    }
+
+    /**
+     * Hands out at most three characters per read, like a reader over a slow stream.
+     */
+    private static class ChunkedReader extends Reader {
+        private final Reader reader;
+
+        ChunkedReader(String text) {
+            this.reader = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return reader.read(buffer, offset, Math.min(length, 3));
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -55,6 +55,10 @@ import com.mware.ge.mutation.ExistingElementMutation;
 import com.mware.ge.values.storable.StreamingPropertyValue;
 import com.mware.ge.values.storable.Values;
 import com.mware.ontology.IgnoredMimeTypes;
+import io.bigconnect.dw.text.common.NerUtils;
+import io.bigconnect.dw.text.common.ParagraphDiff;
+import io.bigconnect.dw.text.common.ParagraphIndex;
+import io.bigconnect.dw.text.common.TextSpan;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
 import edu.stanford.nlp.pipeline.Annotation;
@@ -67,7 +71,6 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
@@ -75,15 +78,58 @@ import java.util.Properties;
 @Description("Extracts sentiment from text using Stanford CoreNLP")
 public class SentimentAnalysisExtractorWorker extends DataWorker {
     private static final BcLogger LOGGER = BcLoggerFactory.getLogger(SentimentAnalysisExtractorWorker.class);
+    public static final String CONFIG_PARALLEL = "corenlp.sentiment.parallel";
+    public static final String CONFIG_THREADS = "corenlp.sentiment.threads";
+    public static final String CONFIG_MAX_SENTENCE_TOKENS = "corenlp.sentiment.max-sentence-tokens";
+    public static final String CONFIG_INCREMENTAL = "corenlp.sentiment.incremental";
+    public static final String CONFIG_APPROXIMATE_THRESHOLD = "corenlp.sentiment.approximate.threshold";
+    public static final String CONFIG_APPROXIMATE_PARSE_MODEL = "corenlp.sentiment.approximate.parse-model";
+    public static final String CONFIG_APPROXIMATE_SENTIMENT_MODEL = "corenlp.sentiment.approximate.sentiment-model";
+    /**
+     * The PCFG model ships with the CoreNLP models the full pipeline already needs. The faster shift-reduce parser
+     * is distributed separately: to use it, put the stanford-srparser models jar on the classpath and set
+     * {@link #CONFIG_APPROXIMATE_PARSE_MODEL} to edu/stanford/nlp/models/srparser/englishSR.ser.gz.
+     */
+    public static final String DEFAULT_APPROXIMATE_PARSE_MODEL = "edu/stanford/nlp/models/lexparser/englishPCFG.ser.gz";
+    public static final String METADATA_SENTIMENT_MODE = "sentimentMode";
+    public static final String SENTIMENT_MODE_FULL = "full";
+    public static final String SENTIMENT_MODE_APPROXIMATE = "approximate";
+    private static final String PARAGRAPH_INDEX_TYPE = "corenlp-sent";
 
     private StanfordCoreNLP pipeline;
+    private SentimentPipelinePool pipelinePool;
+    private StanfordCoreNLP approximatePipeline;
+    private int approximateThreshold;
+    private boolean incremental;
 
     @Override
     public void prepare(DataWorkerPrepareData workerPrepareData) throws Exception {
         super.prepare(workerPrepareData);
-        Properties props = new Properties();
-        props.setProperty("annotators", "tokenize, ssplit, parse, sentiment");
-        pipeline = new StanfordCoreNLP(props);
+        boolean parallel = getConfiguration() != null && getConfiguration().getBoolean(CONFIG_PARALLEL, false);
+        if (parallel) {
+            int threads = getConfiguration().getInt(CONFIG_THREADS, Runtime.getRuntime().availableProcessors());
+            int maxSentenceTokens = getConfiguration().getInt(CONFIG_MAX_SENTENCE_TOKENS, 100);
+            pipelinePool = SentimentPipelinePool.getInstance(threads, maxSentenceTokens);
+        } else {
+            Properties props = new Properties();
+            props.setProperty("annotators", "tokenize, ssplit, parse, sentiment");
+            pipeline = new StanfordCoreNLP(props);
+        }
+
+        incremental = getConfiguration() != null && getConfiguration().getBoolean(CONFIG_INCREMENTAL, false);
+
+        // documents larger than the threshold are scored with the approximate parse and sentiment models
+        approximateThreshold = getConfiguration() == null ? 0 : getConfiguration().getInt(CONFIG_APPROXIMATE_THRESHOLD, 0);
+        if (approximateThreshold > 0) {
+            Properties props = new Properties();
+            props.setProperty("annotators", "tokenize, ssplit, pos, parse, sentiment");
+            props.setProperty("parse.model", getConfiguration().get(CONFIG_APPROXIMATE_PARSE_MODEL, DEFAULT_APPROXIMATE_PARSE_MODEL));
+            String sentimentModel = getConfiguration().get(CONFIG_APPROXIMATE_SENTIMENT_MODEL, null);
+            if (!StringUtils.isEmpty(sentimentModel)) {
+                props.setProperty("sentiment.model", sentimentModel);
+            }
+            approximatePipeline = new StanfordCoreNLP(props);
+        }
     }
 
     @Override
@@ -135,9 +181,21 @@ public class SentimentAnalysisExtractorWorker extends DataWorker {
             return;
         }
 
-        String sentiment = getSentiment(text);
+        boolean approximate = approximatePipeline != null && text.length() > approximateThreshold;
         ExistingElementMutation<Vertex> mutation = refresh(data.getElement()).prepareMutation();
+        String sentiment;
+        if (incremental) {
+            // scores of the paragraphs that did not change are taken from the paragraph index
+            ParagraphIndex previousIndex = ParagraphIndex.read(element, PARAGRAPH_INDEX_TYPE, data.getProperty().getKey());
+            ParagraphIndex index = ParagraphIndex.empty();
+            SentimentScore score = getIncrementalScore(text, approximate, previousIndex, index);
+            index.write(mutation, PARAGRAPH_INDEX_TYPE, data.getProperty().getKey(), getVisibilityTranslator().getDefaultVisibility());
+            sentiment = score.toSentiment();
+        } else {
+            sentiment = getSentiment(text, approximate);
+        }
         com.mware.ge.Metadata metadata = data.createPropertyMetadata(getUser());
+        metadata.add(METADATA_SENTIMENT_MODE, Values.stringValue(approximate ? SENTIMENT_MODE_APPROXIMATE : SENTIMENT_MODE_FULL), Visibility.EMPTY);
         mutation.setProperty(RawObjectSchema.RAW_SENTIMENT.getPropertyName(), Values.stringValue(sentiment), metadata, data.getVisibility());
         Element e = mutation.save(getAuthorizations());
         getGraph().flush();
@@ -153,36 +211,51 @@ public class SentimentAnalysisExtractorWorker extends DataWorker {
                 null);
     }
 
-    private String getSentiment(String text) {
-        List<Integer> sentiments = new ArrayList<>();
-        List<Integer> sizes = new ArrayList<>();
-        Annotation annotation = pipeline.process(text);
-        for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+    private String getSentiment(String text, boolean approximate) throws Exception {
+        return getScore(text, approximate).toSentiment();
+    }
+
+    private SentimentScore getScore(String text, boolean approximate) throws Exception {
+        List<CoreMap> sentences;
+        if (approximate) {
+            sentences = approximatePipeline.process(text).get(CoreAnnotations.SentencesAnnotation.class);
+        } else if (pipelinePool != null) {
+            sentences = pipelinePool.process(text);
+        } else {
+            Annotation annotation = pipeline.process(text);
+            sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+        }
+
+        // each sentence is weighted by its number of tokens
+        SentimentScore score = new SentimentScore();
+        for (CoreMap sentence : sentences) {
             Tree tree = sentence.get(SentimentCoreAnnotations.AnnotatedTree.class);
             int sentiment = RNNCoreAnnotations.getPredictedClass(tree);
-            sentiments.add(sentiment);
-            sizes.add(tree.toString().length());
-
+            int tokens = sentence.get(CoreAnnotations.TokensAnnotation.class).size();
+            score.add((long) sentiment * tokens, tokens);
         }
+        return score;
+    }
 
-        int weightedSentiment;
+    private SentimentScore getIncrementalScore(String text, boolean approximate, ParagraphIndex previousIndex, ParagraphIndex index) throws Exception {
+        String mode = approximate ? SENTIMENT_MODE_APPROXIMATE : SENTIMENT_MODE_FULL;
+        List<TextSpan> paragraphs = NerUtils.getParagraphs(text);
+        ParagraphDiff diff = previousIndex == null ? null : previousIndex.diff(paragraphs);
 
-        if (sentiments.isEmpty())
-            weightedSentiment = -1;
-        else {
-            List<Integer> weightedSentiments = new ArrayList<>();
-            for (int i = 0; i < sentiments.size(); i++) {
-                int sent = sentiments.get(i);
-                int size = sizes.get(i);
-                weightedSentiments.add(sent * size);
+        SentimentScore score = new SentimentScore();
+        for (TextSpan paragraph : paragraphs) {
+            ParagraphIndex.Entry previous = diff == null ? null : diff.getPrevious(paragraph);
+            SentimentScore paragraphScore = previous == null ? null : SentimentScore.parse(previous.getData(), mode);
+            if (paragraphScore == null) {
+                paragraphScore = getScore(paragraph.getText(), approximate);
             }
-            weightedSentiment = weightedSentiments.stream().mapToInt(i -> i).sum() / sizes.stream().mapToInt(i -> i).sum();
+            index.add(paragraph, paragraphScore.format(mode));
+            score.add(paragraphScore.weightedSum, paragraphScore.tokens);
         }
-
-        return normalizeCoreNLPSentiment(weightedSentiment);
+        return score;
     }
 
-    private String normalizeCoreNLPSentiment(double sentiment) {
+    private static String normalizeCoreNLPSentiment(double sentiment) {
         if (sentiment <= 0) return "neutral";
         else if (sentiment < 2.0) return "negative";
         else if (sentiment < 3.0) return "neutral";
@@ -190,10 +263,39 @@ public class SentimentAnalysisExtractorWorker extends DataWorker {
         else return "neutral";
     }
 
+    private static class SentimentScore {
+        long weightedSum;
+        long tokens;
+
+        void add(long weightedSum, long tokens) {
+            this.weightedSum += weightedSum;
+            this.tokens += tokens;
+        }
+
+        String toSentiment() {
+            int weightedSentiment = tokens == 0 ? -1 : (int) (weightedSum / tokens);
+            return normalizeCoreNLPSentiment(weightedSentiment);
+        }
+
+        String format(String mode) {
+            return mode + ":" + weightedSum + ":" + tokens;
+        }
+
+        static SentimentScore parse(String value, String mode) {
+            if (value == null || !value.startsWith(mode + ":")) {
+                return null;
+            }
+            String[] parts = value.split(":");
+            SentimentScore score = new SentimentScore();
+            score.add(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            return score;
+        }
+    }
+
     public static void main(String[] args) throws Exception {
         SentimentAnalysisExtractorWorker worker = new SentimentAnalysisExtractorWorker();
         worker.prepare(null);
-        String result = worker.getSentiment("MANILA, Philippines – Rappler is one of 3 organizations that will be recognized by the US-based National Democratic Institute (NDI) for their work in fighting disinformation and fake news. NDI said Rappler will receive its highest honor – the W. Averell Harriman Democracy Award. NDI is chaired by Madeleine Albright, the 64th US secretary of state, the first woman to become America's top diplomat. Past recipients of this award include former UN secretary general Kofi Annan, first Czech Republic president Václav Havel, Nobel Peace Prize laureate Aung San Suu Kyi, former US presidents Jimmy Carter and Bill Clinton, first female African head of state Ellen Johnson Sirleaf, and Archbishop Desmond Tutu of South Africa. In an announcement on October 26, NDI explained that Rappler \"has suffered threats and severe internal pressure for its pioneering work in exposing disinformation and propaganda in the Philippines to manipulate public opinion.\" \"The story of Rappler shows how the use of disinformation and computational propaganda are bleeding over to domestic actors in new and consolidated democracies, resulting in democratic backsliding,\" NDI said. In October 2016 – months after the 2016 presidential elections in the Philippines – Rappler ran a 3-part series on fake news and trolls who spread propaganda on social media. (READ: Propaganda war: Weaponizing the internet) \"Attacks on Rappler's founder also demonstrate the particularly vicious ways in which disinformation has been used to attack women who are active in political life,\" NDI noted. Rappler CEO and Executive Editor Maria Ressa will accept the award during NDI's annual Democracy Dinner on November 2. The award comes after Rappler officially became a signatory member of the International Fact-Checking Network (IFCN) of Poynter, a forum for fact checkers worldwide. Read NDI's description of Rappler below: Rappler is an online social news network based in the Philippines. It holds public and private sectors accountable, pursuing truth and transparency for the people served. It encourages its readership to be aware of the spread of disinformation and propaganda, and exposes the hidden social media \"machines\" or bots that distort the truth. Rappler has suffered threats and severe internal pressure for its pioneering work in exposing disinformation and propaganda in the Philippines to manipulate public opinion. The story of Rappler shows how the use of disinformation and computational propaganda are bleeding over to domestic actors in new and consolidated democracies, resulting in democratic backsliding. Attacks on Rappler's founder also demonstrate the particularly vicious ways in which disinformation has been used to attack women who are active in political life. Maria A. Ressa, who is accepting the award on behalf of the outlet, is the CEO and executive editor of Rappler, and is a former CNN bureau chief and investigative reporter. Aside from Rappler, StopFake.org from Ukraine and The Oxford Internet Institute from the United Kingdom will also be recognized by NDI on November 2. The annual W. Averell Harriman Democracy Award recognizes an individual or organization that has demonstrated a commitment to democracy and human rights. Aside from Rappler, the only other recipient of the award from the Philippines was former President Corazon Aquino, who was recognized by NDI back in 2004. NDI is a nonprofit, nonpartisan organization working to support and strengthen democratic institutions worldwide through citizen participation, openness, and accountability in government. – Rappler.com");
+        String result = worker.getSentiment("MANILA, Philippines – Rappler is one of 3 organizations that will be recognized by the US-based National Democratic Institute (NDI) for their work in fighting disinformation and fake news. NDI said Rappler will receive its highest honor – the W. Averell Harriman Democracy Award. NDI is chaired by Madeleine Albright, the 64th US secretary of state, the first woman to become America's top diplomat. Past recipients of this award include former UN secretary general Kofi Annan, first Czech Republic president Václav Havel, Nobel Peace Prize laureate Aung San Suu Kyi, former US presidents Jimmy Carter and Bill Clinton, first female African head of state Ellen Johnson Sirleaf, and Archbishop Desmond Tutu of South Africa. In an announcement on October 26, NDI explained that Rappler \"has suffered threats and severe internal pressure for its pioneering work in exposing disinformation and propaganda in the Philippines to manipulate public opinion.\" \"The story of Rappler shows how the use of disinformation and computational propaganda are bleeding over to domestic actors in new and consolidated democracies, resulting in democratic backsliding,\" NDI said. In October 2016 – months after the 2016 presidential elections in the Philippines – Rappler ran a 3-part series on fake news and trolls who spread propaganda on social media. (READ: Propaganda war: Weaponizing the internet) \"Attacks on Rappler's founder also demonstrate the particularly vicious ways in which disinformation has been used to attack women who are active in political life,\" NDI noted. Rappler CEO and Executive Editor Maria Ressa will accept the award during NDI's annual Democracy Dinner on November 2. The award comes after Rappler officially became a signatory member of the International Fact-Checking Network (IFCN) of Poynter, a forum for fact checkers worldwide. Read NDI's description of Rappler below: Rappler is an online social news network based in the Philippines. It holds public and private sectors accountable, pursuing truth and transparency for the people served. It encourages its readership to be aware of the spread of disinformation and propaganda, and exposes the hidden social media \"machines\" or bots that distort the truth. Rappler has suffered threats and severe internal pressure for its pioneering work in exposing disinformation and propaganda in the Philippines to manipulate public opinion. The story of Rappler shows how the use of disinformation and computational propaganda are bleeding over to domestic actors in new and consolidated democracies, resulting in democratic backsliding. Attacks on Rappler's founder also demonstrate the particularly vicious ways in which disinformation has been used to attack women who are active in political life. Maria A. Ressa, who is accepting the award on behalf of the outlet, is the CEO and executive editor of Rappler, and is a former CNN bureau chief and investigative reporter. Aside from Rappler, StopFake.org from Ukraine and The Oxford Internet Institute from the United Kingdom will also be recognized by NDI on November 2. The annual W. Averell Harriman Democracy Award recognizes an individual or organization that has demonstrated a commitment to democracy and human rights. Aside from Rappler, the only other recipient of the award from the Philippines was former President Corazon Aquino, who was recognized by NDI back in 2004. NDI is a nonprofit, nonpartisan organization working to support and strengthen democratic institutions worldwide through citizen participation, openness, and accountability in government. – Rappler.com", false);
         System.out.println(result);
     }
 }
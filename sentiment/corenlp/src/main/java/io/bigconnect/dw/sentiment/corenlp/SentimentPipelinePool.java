@@ -0,0 +1,126 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.sentiment.corenlp;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Splits a text into sentences once and then parses and scores the sentences in parallel.
+ * <p>
+ * StanfordCoreNLP keeps its annotators in a static pool, so several pipelines with the same settings would share
+ * one parser anyway. The parallelism comes from the parser itself instead: a single parse/sentiment pipeline with
+ * parse.nthreads parses the sentences of a document on that many threads. Pipelines are shared by all worker
+ * instances in the process that use the same settings.
+ */
+public class SentimentPipelinePool {
+    private static final Map<String, SentimentPipelinePool> INSTANCES = new HashMap<>();
+
+    private final StanfordCoreNLP splitPipeline;
+    private final StanfordCoreNLP sentimentPipeline;
+    private final int maxSentenceTokens;
+
+    private SentimentPipelinePool(int threads, int maxSentenceTokens) {
+        this.maxSentenceTokens = maxSentenceTokens;
+
+        Properties splitProps = new Properties();
+        splitProps.setProperty("annotators", "tokenize, ssplit");
+        this.splitPipeline = new StanfordCoreNLP(splitProps);
+
+        Properties sentimentProps = new Properties();
+        sentimentProps.setProperty("annotators", "parse, sentiment");
+        sentimentProps.setProperty("parse.nthreads", String.valueOf(threads));
+        // tokens and sentences are already provided by the split pipeline
+        this.sentimentPipeline = new StanfordCoreNLP(sentimentProps, false);
+    }
+
+    public static synchronized SentimentPipelinePool getInstance(int threads, int maxSentenceTokens) {
+        return INSTANCES.computeIfAbsent(threads + "|" + maxSentenceTokens,
+                key -> new SentimentPipelinePool(threads, maxSentenceTokens));
+    }
+
+    /**
+     * @return the sentences of the text, each one annotated with its sentiment tree
+     */
+    public List<CoreMap> process(String text) {
+        Annotation document = splitPipeline.process(text);
+        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+        if (sentences == null || sentences.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<CoreMap> cappedSentences = new ArrayList<>(sentences.size());
+        List<CoreLabel> tokens = new ArrayList<>();
+        for (CoreMap sentence : sentences) {
+            CoreMap capped = capSentence(sentence);
+            cappedSentences.add(capped);
+            tokens.addAll(capped.get(CoreAnnotations.TokensAnnotation.class));
+        }
+
+        Annotation annotation = new Annotation(text);
+        annotation.set(CoreAnnotations.TokensAnnotation.class, tokens);
+        annotation.set(CoreAnnotations.SentencesAnnotation.class, cappedSentences);
+        sentimentPipeline.annotate(annotation);
+        return cappedSentences;
+    }
+
+    private CoreMap capSentence(CoreMap sentence) {
+        List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+        if (maxSentenceTokens <= 0 || tokens.size() <= maxSentenceTokens) {
+            return sentence;
+        }
+
+        List<CoreLabel> cappedTokens = new ArrayList<>(tokens.subList(0, maxSentenceTokens));
+        CoreMap capped = new ArrayCoreMap();
+        capped.set(CoreAnnotations.TokensAnnotation.class, cappedTokens);
+        capped.set(CoreAnnotations.TextAnnotation.class, sentence.get(CoreAnnotations.TextAnnotation.class));
+        capped.set(CoreAnnotations.CharacterOffsetBeginAnnotation.class, cappedTokens.get(0).beginPosition());
+        capped.set(CoreAnnotations.CharacterOffsetEndAnnotation.class, cappedTokens.get(cappedTokens.size() - 1).endPosition());
+        return capped;
+    }
+}
@@ -61,6 +61,8 @@ import com.mware.ge.values.storable.StreamingPropertyValue;
 import com.mware.ge.values.storable.Values;
 import com.mware.ontology.IgnoredMimeTypes;
 import io.bigconnect.dw.text.common.NerUtils;
+import io.bigconnect.dw.text.common.ParagraphDiff;
+import io.bigconnect.dw.text.common.ParagraphIndex;
 import io.bigconnect.dw.text.common.TextSpan;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -73,7 +75,10 @@ import java.awt.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 @Name("IntelliDockers Sentiment Analysis")
 @Description("Extracts sentiment from text using IntelliDockers")
@@ -81,9 +86,12 @@ public class IntelliDockersSentimentExtractorWorker extends DataWorker {
     private static final BcLogger LOGGER = BcLoggerFactory.getLogger(IntelliDockersSentimentExtractorWorker.class);
     public static final String CONFIG_INTELLIDOCKERS_URL = "intellidockers.ron.sentiment.url";
     public static final String CONFIG_INTELLIDOCKERS_PARAGRAPHS = "intellidockers.ron.sentiment.paragraphs";
+    public static final String CONFIG_INTELLIDOCKERS_INCREMENTAL = "intellidockers.ron.sentiment.incremental";
+    private static final String TERM_MENTION_TYPE = "sent";
 
     private IntelliDockersSentiment service;
     private boolean doParagraphs;
+    private boolean incremental;
     private TermMentionRepository termMentionRepository;
     private TermMentionUtils termMentionUtils;
 
@@ -108,6 +116,7 @@ public class IntelliDockersSentimentExtractorWorker extends DataWorker {
         service = retrofit.create(IntelliDockersSentiment.class);
 
         this.doParagraphs = getConfiguration().getBoolean(CONFIG_INTELLIDOCKERS_PARAGRAPHS, true);
+        this.incremental = getConfiguration().getBoolean(CONFIG_INTELLIDOCKERS_INCREMENTAL, false);
         this.termMentionUtils = new TermMentionUtils(getGraph(), getVisibilityTranslator(), getAuthorizations(), getUser());
     }
 
@@ -175,16 +184,37 @@ public class IntelliDockersSentimentExtractorWorker extends DataWorker {
             }
 
             if (doParagraphs) {
-                NerUtils.removeSentimentTermMentions(element, termMentionRepository, getGraph(), getAuthorizations());
                 List<TextSpan> paragraphs = NerUtils.getParagraphs(text);
+                List<TextSpan> changedParagraphs = paragraphs;
+                ParagraphIndex previousIndex = incremental ? ParagraphIndex.read(element, TERM_MENTION_TYPE, textProperty.getKey()) : null;
+                if (previousIndex == null) {
+                    NerUtils.removeSentimentTermMentions(element, termMentionRepository, getGraph(), getAuthorizations());
+                } else {
+                    // only the paragraphs that were modified since the last run are sent for analysis
+                    ParagraphDiff diff = previousIndex.diff(paragraphs);
+                    NerUtils.removeChangedTermMentions(element, textProperty, diff, Collections.singleton(TERM_MENTION_TYPE),
+                            getClass().getName(), termMentionRepository, getGraph(), getAuthorizations());
+                    changedParagraphs = diff.getChangedParagraphs();
+                }
 
                 VisibilityJson tmVisibilityJson = new VisibilityJson();
                 tmVisibilityJson.setSource("");
-                for (TextSpan p : paragraphs) {
-                    response = service.process(new SentimentRequest(p.getText(), "ron"))
-                            .execute();
-                    SentimentResponse result = response.body();
-                    if (result != null) {
+                // paragraphs that could not be scored are left out of the index, so the next run sends them again
+                Set<TextSpan> failedParagraphs = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (TextSpan p : changedParagraphs) {
+                    SentimentResponse result = null;
+                    try {
+                        response = service.process(new SentimentRequest(p.getText(), "ron"))
+                                .execute();
+                        if (response.isSuccessful()) {
+                            result = response.body();
+                        }
+                    } catch (IOException e) {
+                        LOGGER.warn("Could not extract paragraph sentiment: %s", e.getMessage());
+                    }
+                    if (result == null) {
+                        failedParagraphs.add(p);
+                    } else {
                         String sentiment = toBcSentiment(result);
                         TermMentionBuilder tmb = new TermMentionBuilder()
                                 .outVertex(element)
@@ -194,7 +224,7 @@ public class IntelliDockersSentimentExtractorWorker extends DataWorker {
                                 .end(p.getEnd())
                                 .title(String.format("%s: %f", StringUtils.capitalize(sentiment), result.score))
                                 .score(result.score)
-                                .type("sent")
+                                .type(TERM_MENTION_TYPE)
                                 .visibilityJson(tmVisibilityJson)
                                 .process(getClass().getName());
 
@@ -207,6 +237,16 @@ public class IntelliDockersSentimentExtractorWorker extends DataWorker {
                         tmb.save(getGraph(), getVisibilityTranslator(), getUser(), getAuthorizations());
                     }
                 }
+
+                if (incremental) {
+                    ParagraphIndex index = ParagraphIndex.empty();
+                    paragraphs.stream()
+                            .filter(p -> !failedParagraphs.contains(p))
+                            .forEach(p -> index.add(p, null));
+                    m = element.prepareMutation();
+                    index.write(m, TERM_MENTION_TYPE, textProperty.getKey(), getVisibilityTranslator().getDefaultVisibility());
+                    element = m.save(getAuthorizations());
+                }
                 getGraph().flush();
             }
         } catch (IOException e) {
@@ -0,0 +1,153 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.common;
+
+import com.mware.core.model.properties.types.StringMetadataBcProperty;
+import com.mware.ge.Property;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+
+/**
+ * Language of each region of a mixed-language text, stored as metadata of the text property.
+ * Adjacent regions with the same language are merged into a single span.
+ */
+public class LanguageSpans {
+    public static final StringMetadataBcProperty LANGUAGE_SPANS_METADATA = new StringMetadataBcProperty("languageSpans");
+
+    private final List<Span> spans = new ArrayList<>();
+
+    public static LanguageSpans fromProperty(Property textProperty) {
+        if (!textProperty.getMetadata().containsKey(LANGUAGE_SPANS_METADATA.getMetadataKey())) {
+            return null;
+        }
+        return parse(LANGUAGE_SPANS_METADATA.getMetadataValue(textProperty));
+    }
+
+    public static LanguageSpans parse(String value) {
+        LanguageSpans result = new LanguageSpans();
+        if (StringUtils.isEmpty(value)) {
+            return result;
+        }
+
+        for (String span : value.split(",")) {
+            String[] fields = span.split(":");
+            result.add(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), fields[2]);
+        }
+        return result;
+    }
+
+    public String format() {
+        StringBuilder result = new StringBuilder();
+        for (Span span : spans) {
+            if (result.length() > 0) {
+                result.append(',');
+            }
+            result.append(span.start).append(':').append(span.end).append(':').append(span.language);
+        }
+        return result.toString();
+    }
+
+    public void add(int start, int end, String language) {
+        if (!spans.isEmpty()) {
+            Span last = spans.get(spans.size() - 1);
+            if (last.language.equals(language)) {
+                last.end = end;
+                return;
+            }
+        }
+        spans.add(new Span(start, end, language));
+    }
+
+    public List<Span> getSpans() {
+        return Collections.unmodifiableList(spans);
+    }
+
+    public boolean isMultilingual() {
+        return spans.size() > 1;
+    }
+
+    /**
+     * @return the language covering most of the text, or null if there are no spans
+     */
+    public String getDominantLanguage() {
+        Map<String, Integer> lengths = new HashMap<>();
+        for (Span span : spans) {
+            lengths.merge(span.language, span.end - span.start, Integer::sum);
+        }
+        return lengths.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    /**
+     * @return the language of the span containing the offset, or null if none does
+     */
+    public String getLanguageAt(int offset) {
+        for (Span span : spans) {
+            if (offset >= span.start && offset < span.end) {
+                return span.language;
+            }
+        }
+        return null;
+    }
+
+    public static class Span {
+        private final int start;
+        private int end;
+        private final String language;
+
+        Span(int start, int end, String language) {
+            this.start = start;
+            this.end = end;
+            this.language = language;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public String getLanguage() {
+            return language;
+        }
+    }
+}
@@ -36,17 +36,25 @@
  */
 package io.bigconnect.dw.text.common;
 
+import com.mware.core.model.properties.BcSchema;
+import com.mware.core.model.schema.SchemaConstants;
 import com.mware.core.model.termMention.TermMentionRepository;
 import com.mware.core.model.termMention.TermMentionUtils;
 import com.mware.ge.Authorizations;
+import com.mware.ge.Direction;
+import com.mware.ge.Edge;
 import com.mware.ge.Graph;
+import com.mware.ge.Property;
 import com.mware.ge.Vertex;
+import com.mware.ge.mutation.ExistingElementMutation;
 import org.apache.commons.lang.StringUtils;
 import org.apache.poi.ss.formula.functions.T;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -76,6 +84,70 @@ public class NerUtils {
         graph.flush();
     }
 
+    /**
+     * Deletes the term mentions of the given types and process that belong to paragraphs which were modified or
+     * removed, and moves the term mentions of unchanged paragraphs to their new offsets. Term mentions created by
+     * other processes are left alone.
+     */
+    public static synchronized void removeChangedTermMentions(
+            Vertex outVertex,
+            Property textProperty,
+            ParagraphDiff diff,
+            Set<String> types,
+            String process,
+            TermMentionRepository termMentionRepository,
+            Graph graph,
+            Authorizations authorizations
+    ) {
+        Iterable<Vertex> termMentions = termMentionRepository.findByOutVertexAndProperty(
+                outVertex.getId(), textProperty.getKey(), textProperty.getName(), authorizations);
+        for (Vertex termMention : termMentions) {
+            if (!types.contains(BcSchema.TERM_MENTION_TYPE.getPropertyValue(termMention, ""))
+                    || !process.equals(BcSchema.TERM_MENTION_PROCESS.getPropertyValue(termMention))) {
+                continue;
+            }
+
+            long start = BcSchema.TERM_MENTION_START_OFFSET.getPropertyValue(termMention, 0L);
+            long end = BcSchema.TERM_MENTION_END_OFFSET.getPropertyValue(termMention, 0L);
+            long newStart = diff.translateOffset(start);
+            if (newStart < 0) {
+                termMentionRepository.delete(termMention, authorizations);
+            } else if (newStart != start) {
+                ExistingElementMutation<Vertex> m = termMention.prepareMutation();
+                BcSchema.TERM_MENTION_START_OFFSET.setProperty(m, newStart, termMention.getVisibility());
+                BcSchema.TERM_MENTION_END_OFFSET.setProperty(m, newStart + end - start, termMention.getVisibility());
+                m.save(authorizations);
+            }
+        }
+        graph.flush();
+    }
+
+    /**
+     * Removes the detected entity relations of the vertex that no term mention is resolved through anymore.
+     */
+    public static synchronized void removeUnusedHasDetectedEntityRelations(
+            Vertex outVertex,
+            TermMentionRepository termMentionRepository,
+            Graph graph,
+            Authorizations authorizations
+    ) {
+        Set<String> usedEdgeIds = new HashSet<>();
+        for (Vertex termMention : termMentionRepository.findByOutVertex(outVertex.getId(), authorizations)) {
+            String edgeId = BcSchema.TERM_MENTION_RESOLVED_EDGE_ID.getPropertyValue(termMention);
+            if (edgeId != null) {
+                usedEdgeIds.add(edgeId);
+            }
+        }
+
+        Vertex vertex = graph.getVertex(outVertex.getId(), authorizations);
+        for (Edge edge : vertex.getEdges(Direction.OUT, SchemaConstants.EDGE_LABEL_HAS_DETECTED_ENTITY, authorizations)) {
+            if (!usedEdgeIds.contains(edge.getId())) {
+                graph.deleteEdge(edge, authorizations);
+            }
+        }
+        graph.flush();
+    }
+
     private static final String BLANK_LINE = "(?<=(\r\n|\r|\n))([ \\t]*$)+";
     private static final Pattern paragraphSplitter = Pattern.compile(BLANK_LINE, Pattern.MULTILINE);
 
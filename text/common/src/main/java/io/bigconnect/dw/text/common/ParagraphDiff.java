@@ -0,0 +1,97 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.common;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of comparing the paragraphs of a text with a previously stored {@link ParagraphIndex}.
+ */
+public class ParagraphDiff {
+    private final List<ParagraphIndex.Entry> previousEntries;
+    private final List<TextSpan> changed = new ArrayList<>();
+    private final List<TextSpan> unchanged = new ArrayList<>();
+    private final Map<ParagraphIndex.Entry, TextSpan> currentByPrevious = new IdentityHashMap<>();
+    private final Map<TextSpan, ParagraphIndex.Entry> previousByCurrent = new IdentityHashMap<>();
+
+    ParagraphDiff(List<ParagraphIndex.Entry> previousEntries) {
+        this.previousEntries = previousEntries;
+    }
+
+    void changed(TextSpan paragraph) {
+        changed.add(paragraph);
+    }
+
+    void unchanged(TextSpan paragraph, ParagraphIndex.Entry previous) {
+        unchanged.add(paragraph);
+        currentByPrevious.put(previous, paragraph);
+        previousByCurrent.put(paragraph, previous);
+    }
+
+    /**
+     * @return the paragraphs that are new or were modified and need to be analyzed again
+     */
+    public List<TextSpan> getChangedParagraphs() {
+        return changed;
+    }
+
+    public List<TextSpan> getUnchangedParagraphs() {
+        return unchanged;
+    }
+
+    public ParagraphIndex.Entry getPrevious(TextSpan unchangedParagraph) {
+        return previousByCurrent.get(unchangedParagraph);
+    }
+
+    /**
+     * Translates an offset of the previous text to the current text.
+     *
+     * @return the new offset or -1 if the offset was in a paragraph that was removed or modified
+     */
+    public long translateOffset(long previousOffset) {
+        for (ParagraphIndex.Entry entry : previousEntries) {
+            if (previousOffset >= entry.getStart() && previousOffset < entry.getEnd()) {
+                TextSpan current = currentByPrevious.get(entry);
+                return current == null ? -1 : previousOffset - entry.getStart() + current.getStart();
+            }
+        }
+        return -1;
+    }
+}
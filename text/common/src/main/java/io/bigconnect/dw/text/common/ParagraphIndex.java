@@ -0,0 +1,174 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.common;
+
+import com.google.common.hash.Hashing;
+import com.mware.core.model.properties.types.StringBcProperty;
+import com.mware.ge.Element;
+import com.mware.ge.Metadata;
+import com.mware.ge.Visibility;
+import com.mware.ge.mutation.ElementMutation;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Content hashes of the paragraphs of a text property, as they were when a worker last processed it.
+ * The index is stored next to the term mentions created by the worker, in a hidden property of the
+ * element keyed by the worker type and the text property key. Each entry can carry an opaque, worker specific
+ * value (e.g. the score of the paragraph) which is kept for the paragraphs that did not change.
+ */
+public class ParagraphIndex {
+    public static final StringBcProperty PARAGRAPH_INDEX = new StringBcProperty("paragraphIndex");
+
+    private static final String ENTRY_SEPARATOR = "\n";
+    private static final String FIELD_SEPARATOR = ",";
+
+    private final List<Entry> entries;
+
+    private ParagraphIndex(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static ParagraphIndex empty() {
+        return new ParagraphIndex(new ArrayList<>());
+    }
+
+    public static ParagraphIndex read(Element element, String type, String textPropertyKey) {
+        String value = PARAGRAPH_INDEX.getPropertyValue(element, indexKey(type, textPropertyKey));
+        if (StringUtils.isEmpty(value)) {
+            return null;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (String line : value.split(ENTRY_SEPARATOR)) {
+            String[] fields = line.split(FIELD_SEPARATOR, 4);
+            if (fields.length < 3) {
+                continue;
+            }
+            entries.add(new Entry(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                    fields.length > 3 ? fields[3] : null));
+        }
+        return new ParagraphIndex(entries);
+    }
+
+    public void write(ElementMutation<?> mutation, String type, String textPropertyKey, Visibility visibility) {
+        StringBuilder value = new StringBuilder();
+        for (Entry entry : entries) {
+            if (value.length() > 0) {
+                value.append(ENTRY_SEPARATOR);
+            }
+            value.append(entry.hash).append(FIELD_SEPARATOR)
+                    .append(entry.start).append(FIELD_SEPARATOR)
+                    .append(entry.end);
+            if (entry.data != null) {
+                value.append(FIELD_SEPARATOR).append(entry.data);
+            }
+        }
+        PARAGRAPH_INDEX.addPropertyValue(mutation, indexKey(type, textPropertyKey), value.toString(), Metadata.create(), visibility);
+    }
+
+    public void add(TextSpan paragraph, String data) {
+        entries.add(new Entry(hash(paragraph.getText()), paragraph.getStart(), paragraph.getEnd(), data));
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Matches the paragraphs of the current text against this index. Paragraphs are matched by content hash, in
+     * document order, so a paragraph that was only moved by an edit somewhere before it is still considered unchanged.
+     */
+    public ParagraphDiff diff(List<TextSpan> paragraphs) {
+        Map<String, Deque<Entry>> previousByHash = new HashMap<>();
+        for (Entry entry : entries) {
+            previousByHash.computeIfAbsent(entry.hash, h -> new ArrayDeque<>()).add(entry);
+        }
+
+        ParagraphDiff diff = new ParagraphDiff(entries);
+        for (TextSpan paragraph : paragraphs) {
+            Deque<Entry> candidates = previousByHash.get(hash(paragraph.getText()));
+            Entry previous = candidates == null ? null : candidates.poll();
+            if (previous == null) {
+                diff.changed(paragraph);
+            } else {
+                diff.unchanged(paragraph, previous);
+            }
+        }
+        return diff;
+    }
+
+    public static String hash(String text) {
+        return Hashing.sha256().hashString(text, StandardCharsets.UTF_8).toString();
+    }
+
+    private static String indexKey(String type, String textPropertyKey) {
+        return type + ":" + textPropertyKey;
+    }
+
+    public static class Entry {
+        private final String hash;
+        private final int start;
+        private final int end;
+        private final String data;
+
+        Entry(String hash, int start, int end, String data) {
+            this.hash = hash;
+            this.start = start;
+            this.end = end;
+            this.data = data;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public String getData() {
+            return data;
+        }
+    }
+}
@@ -1,32 +1,68 @@
 package io.bigconnect.dw.text.language;
 
 import com.google.common.base.Optional;
+import com.optimaize.langdetect.DetectedLanguage;
 import com.optimaize.langdetect.LanguageDetectorBuilder;
 import com.optimaize.langdetect.i18n.LdLocale;
 import com.optimaize.langdetect.ngram.NgramExtractors;
-import com.optimaize.langdetect.profiles.LanguageProfile;
 import com.optimaize.langdetect.profiles.LanguageProfileReader;
 import com.optimaize.langdetect.text.CommonTextObjectFactories;
 import com.optimaize.langdetect.text.TextObject;
 import com.optimaize.langdetect.text.TextObjectFactory;
 
+import java.io.IOException;
 import java.util.List;
 
+/**
+ * The detector and the text object factory are immutable once built, so a single instance can be used
+ * concurrently by all worker threads; the per-call state lives in the {@link TextObject}. Building the
+ * detector loads the n-gram data of every built-in profile, so there is one instance per process, see
+ * {@link #getInstance()}.
+ */
 public class LanguageDetectorUtil {
-    private com.optimaize.langdetect.LanguageDetector languageDetector;
+    private static final double MINIMAL_CONFIDENCE = 0.75d;
+    private static LanguageDetectorUtil instance;
 
-    public LanguageDetectorUtil() throws Exception {
-        List<LanguageProfile> languageProfiles = new LanguageProfileReader().readAllBuiltIn();
+    private final com.optimaize.langdetect.LanguageDetector languageDetector;
+    private final TextObjectFactory textObjectFactory = CommonTextObjectFactories.forDetectingOnLargeText();
+
+    private LanguageDetectorUtil() throws IOException {
         languageDetector = LanguageDetectorBuilder.create(NgramExtractors.standard())
-                .withProfiles(languageProfiles)
-                .minimalConfidence(0.75d)
+                .withProfiles(new LanguageProfileReader().readAllBuiltIn())
+                .minimalConfidence(MINIMAL_CONFIDENCE)
                 .build();
     }
 
-    synchronized Optional<String> detectLanguage(String text) {
-        TextObjectFactory textObjectFactory = CommonTextObjectFactories.forDetectingOnLargeText();
+    public static synchronized LanguageDetectorUtil getInstance() throws IOException {
+        if (instance == null) {
+            instance = new LanguageDetectorUtil();
+        }
+        return instance;
+    }
+
+    Optional<String> detectLanguage(String text) {
         TextObject textObject = textObjectFactory.forText(text);
         Optional<LdLocale> lang = languageDetector.detect(textObject);
         return lang.transform(LdLocale::getLanguage);
     }
+
+    /**
+     * Detects the language of a sampled text, adding samples until the detection is confident enough.
+     */
+    Optional<String> detectLanguage(TextSampler sampler) throws IOException {
+        StringBuilder text = new StringBuilder();
+        String sample;
+        while ((sample = sampler.next()) != null) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(sample);
+
+            List<DetectedLanguage> probabilities = languageDetector.getProbabilities(textObjectFactory.forText(text));
+            if (!probabilities.isEmpty() && probabilities.get(0).getProbability() >= MINIMAL_CONFIDENCE) {
+                return Optional.of(probabilities.get(0).getLocale().getLanguage());
+            }
+        }
+        return Optional.absent();
+    }
 }
@@ -52,14 +52,19 @@ import com.mware.ge.Property;
 import com.mware.ge.Vertex;
 import com.mware.ge.Visibility;
 import com.mware.ge.mutation.ExistingElementMutation;
+import com.mware.ge.values.storable.StreamingPropertyValue;
 import com.mware.ge.values.storable.Values;
 import com.optimaize.langdetect.i18n.LdLocale;
 import com.optimaize.langdetect.profiles.BuiltInLanguages;
+import io.bigconnect.dw.text.common.LanguageSpans;
+import io.bigconnect.dw.text.common.NerUtils;
+import io.bigconnect.dw.text.common.TextSpan;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -68,12 +73,22 @@ import java.util.stream.Collectors;
 @Description("Detect the language of a piece of text")
 public class LanguageDetectorWorker extends DataWorker {
     private static final BcLogger LOGGER = BcLoggerFactory.getLogger(LanguageDetectorWorker.class);
+    public static final String CONFIG_SAMPLE_SIZE = "language.detector.sample-size";
+    public static final String CONFIG_SEGMENTED = "language.detector.segmented";
+    public static final String CONFIG_SEGMENT_MIN_LENGTH = "language.detector.segment.min-length";
+
     private LanguageDetectorUtil languageDetector;
+    private int sampleSize;
+    private boolean segmented;
+    private int segmentMinLength;
 
     @Override
     public void prepare(DataWorkerPrepareData workerPrepareData) throws Exception {
         super.prepare(workerPrepareData);
-        this.languageDetector = new LanguageDetectorUtil();
+        this.languageDetector = LanguageDetectorUtil.getInstance();
+        this.sampleSize = getConfiguration().getInt(CONFIG_SAMPLE_SIZE, 30000);
+        this.segmented = getConfiguration().getBoolean(CONFIG_SEGMENTED, false);
+        this.segmentMinLength = getConfiguration().getInt(CONFIG_SEGMENT_MIN_LENGTH, 100);
     }
 
     @Override
@@ -90,17 +105,39 @@ public class LanguageDetectorWorker extends DataWorker {
     @Override
     public void execute(InputStream in, DataWorkerData data) throws Exception {
         if (BcSchema.TEXT.isSameName(data.getProperty())) {
-            String text = IOUtils.toString(in, StandardCharsets.UTF_8);
-            if (StringUtils.isEmpty(text)) {
-                return;
+            Optional<String> language;
+            LanguageSpans languageSpans = null;
+            if (segmented) {
+                // every paragraph is needed, so the whole text is read
+                String text = IOUtils.toString(in, StandardCharsets.UTF_8);
+                if (StringUtils.isEmpty(text)) {
+                    return;
+                }
+
+                languageSpans = detectLanguageSpans(text);
+                language = languageSpans.getSpans().isEmpty()
+                        ? languageDetector.detectLanguage(text)
+                        : Optional.of(languageSpans.getDominantLanguage());
+            } else {
+                // only a bounded sample of the text is read, regardless of its size
+                StreamingPropertyValue spv = BcSchema.TEXT.getPropertyValue(data.getProperty());
+                long length = spv == null ? -1 : spv.getLength();
+                TextSampler sampler = new TextSampler(in, length, sampleSize);
+                language = languageDetector.detectLanguage(sampler);
+                if (sampler.getBytesRead() == 0) {
+                    return;
+                }
             }
 
-            Optional<String> language = languageDetector.detectLanguage(text);
             if (language.isPresent()) {
                 // set the new language
                 ExistingElementMutation<Vertex> m = refresh(data.getElement()).prepareMutation();
                 m.setPropertyMetadata(data.getProperty(), BcSchema.TEXT_LANGUAGE_METADATA.getMetadataKey(),
                         Values.stringValue(language.get()), Visibility.EMPTY);
+                if (languageSpans != null) {
+                    m.setPropertyMetadata(data.getProperty(), LanguageSpans.LANGUAGE_SPANS_METADATA.getMetadataKey(),
+                            Values.stringValue(languageSpans.format()), Visibility.EMPTY);
+                }
 
                 // the key for the RAW_LANGUAGE prop must be the same as the TEXT prop key for which the language is detected
                 // this combination is used later in the EntityExtractor and SentimentExtractor
@@ -119,7 +156,7 @@ public class LanguageDetectorWorker extends DataWorker {
                         ElementOrPropertyStatus.UPDATE,
                         null);
             } else {
-                LOGGER.warn("Could not detect language for text: " + text);
+                LOGGER.warn("Could not detect language for text property: " + data.getProperty().getKey());
             }
         } else if (BcSchema.TITLE.isSameName(data.getProperty())) {
             String title = BcSchema.TITLE.getFirstPropertyValue(data.getElement());
@@ -147,6 +184,36 @@ public class LanguageDetectorWorker extends DataWorker {
         }
     }
 
+    /**
+     * Detects the language of each paragraph. Paragraphs that are too short for a reliable detection take the
+     * language of the paragraph before them.
+     */
+    private LanguageSpans detectLanguageSpans(String text) {
+        LanguageSpans languageSpans = new LanguageSpans();
+        List<TextSpan> pending = new ArrayList<>();
+        String currentLanguage = null;
+        for (TextSpan paragraph : NerUtils.getParagraphs(text)) {
+            if (paragraph.getText().length() >= segmentMinLength) {
+                Optional<String> language = languageDetector.detectLanguage(paragraph.getText());
+                if (language.isPresent()) {
+                    currentLanguage = language.get();
+                }
+            }
+
+            if (currentLanguage == null) {
+                pending.add(paragraph);
+                continue;
+            }
+
+            for (TextSpan p : pending) {
+                languageSpans.add(p.getStart(), p.getEnd(), currentLanguage);
+            }
+            pending.clear();
+            languageSpans.add(paragraph.getStart(), paragraph.getEnd(), currentLanguage);
+        }
+        return languageSpans;
+    }
+
     public static Set<String> getSupportedLanguages() {
         List<LdLocale> languages = BuiltInLanguages.getLanguages();
         return languages.stream()
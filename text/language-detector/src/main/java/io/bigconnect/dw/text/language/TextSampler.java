@@ -0,0 +1,144 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.language;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads bounded samples of UTF-8 text from the beginning, the middle and the end of a stream, on demand.
+ * Only the sampled bytes are ever held in memory, and the parts in between are skipped.
+ */
+public class TextSampler {
+    private static final int SAMPLES = 3;
+
+    private final InputStream in;
+    private final long length;
+    private final int sampleSize;
+    private long position = 0;
+    private int sampleIndex = 0;
+    private long bytesRead = 0;
+
+    /**
+     * @param length     the length of the stream in bytes or a negative value if unknown
+     * @param sampleSize the total number of bytes (roughly characters) to sample
+     */
+    public TextSampler(InputStream in, long length, int sampleSize) {
+        this.in = in;
+        this.length = length;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @return the next sample or null if there are no more samples
+     */
+    public String next() throws IOException {
+        if (sampleIndex >= SAMPLES) {
+            return null;
+        }
+
+        byte[] bytes;
+        if (length < 0 || length <= sampleSize) {
+            // small text, take it all at once
+            bytes = new byte[sampleSize];
+            sampleIndex = SAMPLES;
+        } else {
+            int segmentSize = sampleSize / SAMPLES;
+            long segmentStart;
+            if (sampleIndex == 0) {
+                segmentStart = 0;
+            } else if (sampleIndex == 1) {
+                segmentStart = (length - segmentSize) / 2;
+            } else {
+                segmentStart = length - segmentSize;
+            }
+            sampleIndex++;
+
+            if (segmentStart > position) {
+                IOUtils.skipFully(in, segmentStart - position);
+                position = segmentStart;
+            }
+            bytes = new byte[segmentSize];
+        }
+
+        int read = IOUtils.read(in, bytes);
+        position += read;
+        bytesRead += read;
+        if (read == 0) {
+            sampleIndex = SAMPLES;
+            return null;
+        }
+        return decode(bytes, read);
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Decodes the sample, dropping the partial UTF-8 sequences at its edges.
+     */
+    private static String decode(byte[] bytes, int length) {
+        int start = 0;
+        while (start < length && isContinuationByte(bytes[start])) {
+            start++;
+        }
+        int end = length;
+        int lead = end - 1;
+        while (lead > start && isContinuationByte(bytes[lead])) {
+            lead--;
+        }
+        if (lead >= start && sequenceLength(bytes[lead]) > end - lead) {
+            end = lead;
+        }
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isContinuationByte(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    private static int sequenceLength(byte b) {
+        if ((b & 0x80) == 0) return 1;
+        if ((b & 0xE0) == 0xC0) return 2;
+        if ((b & 0xF0) == 0xE0) return 3;
+        return 4;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.extractor;
+
+import com.google.common.hash.Hashing;
+import com.mware.core.util.BcLogger;
+import com.mware.core.util.BcLoggerFactory;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tika.metadata.Metadata;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Disk-backed cache of extracted text and Tika metadata keyed by the SHA-256 of the raw content and its
+ * mime type, so identical files arriving on different vertices are only parsed once. The mime type is part
+ * of the key because it picks the extraction path, e.g. HTML is cleaned up instead of going through Tika.
+ * Entries are evicted least recently used first once the cache directory grows past its size cap.
+ */
+public class ExtractedTextCache {
+    private static final BcLogger LOGGER = BcLoggerFactory.getLogger(ExtractedTextCache.class);
+    private static final String TEXT_SUFFIX = ".txt";
+    private static final String METADATA_SUFFIX = ".json";
+    private static final Map<File, ExtractedTextCache> INSTANCES = new HashMap<>();
+
+    private final File directory;
+    private final long maxSize;
+    // hash -> size of both entry files, in access order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    private ExtractedTextCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        load();
+    }
+
+    public static synchronized ExtractedTextCache getInstance(File directory, long maxSize) {
+        return INSTANCES.computeIfAbsent(directory.getAbsoluteFile(), dir -> new ExtractedTextCache(dir, maxSize));
+    }
+
+    private void load() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Could not create text cache directory: " + directory);
+        }
+
+        File[] textFiles = directory.listFiles((dir, name) -> name.endsWith(TEXT_SUFFIX));
+        if (textFiles == null) {
+            return;
+        }
+        Arrays.sort(textFiles, Comparator.comparingLong(File::lastModified));
+        for (File textFile : textFiles) {
+            String hash = textFile.getName().substring(0, textFile.getName().length() - TEXT_SUFFIX.length());
+            File metadataFile = metadataFile(hash);
+            if (metadataFile.exists()) {
+                long entrySize = textFile.length() + metadataFile.length();
+                entries.put(hash, entrySize);
+                size += entrySize;
+            } else {
+                FileUtils.deleteQuietly(textFile);
+            }
+        }
+        LOGGER.info("Loaded %d cached texts (%d bytes) from %s", entries.size(), size, directory);
+        evict();
+    }
+
+    /**
+     * Copies the cached text into out and the cached metadata into metadata.
+     *
+     * @return false if nothing is cached for the content
+     */
+    public boolean read(String contentHash, String mimeType, Metadata metadata, Writer out) throws IOException {
+        String hash = entryKey(contentHash, mimeType);
+        synchronized (this) {
+            if (entries.get(hash) == null) {
+                return false;
+            }
+        }
+
+        // both files are opened before anything is handed out, an open file can still be read once it is evicted
+        File textFile = textFile(hash);
+        JSONObject json;
+        Reader in;
+        try {
+            json = new JSONObject(FileUtils.readFileToString(metadataFile(hash), StandardCharsets.UTF_8));
+            in = new InputStreamReader(new FileInputStream(textFile), StandardCharsets.UTF_8);
+        } catch (FileNotFoundException e) {
+            // evicted by another thread in the meantime
+            synchronized (this) {
+                remove(hash);
+            }
+            return false;
+        }
+
+        try {
+            for (String name : json.keySet()) {
+                JSONArray values = json.getJSONArray(name);
+                metadata.remove(name);
+                for (int i = 0; i < values.length(); i++) {
+                    metadata.add(name, values.getString(i));
+                }
+            }
+            IOUtils.copy(in, out);
+        } finally {
+            in.close();
+        }
+        textFile.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    public void write(String contentHash, String mimeType, Metadata metadata, InputStream text) throws IOException {
+        String hash = entryKey(contentHash, mimeType);
+        JSONObject json = new JSONObject();
+        for (String name : metadata.names()) {
+            json.put(name, new JSONArray(metadata.getValues(name)));
+        }
+
+        File tmpText = File.createTempFile(hash, TEXT_SUFFIX, directory);
+        File tmpMetadata = File.createTempFile(hash, METADATA_SUFFIX, directory);
+        try {
+            FileUtils.copyInputStreamToFile(text, tmpText);
+            FileUtils.writeStringToFile(tmpMetadata, json.toString(), StandardCharsets.UTF_8);
+
+            synchronized (this) {
+                if (entries.containsKey(hash)) {
+                    return;
+                }
+                // the metadata file goes last, an entry only counts once both are in place
+                Files.move(tmpText.toPath(), textFile(hash).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmpMetadata.toPath(), metadataFile(hash).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                long entrySize = textFile(hash).length() + metadataFile(hash).length();
+                entries.put(hash, entrySize);
+                size += entrySize;
+                evict();
+            }
+        } finally {
+            FileUtils.deleteQuietly(tmpText);
+            FileUtils.deleteQuietly(tmpMetadata);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            size -= eldest.getValue();
+            FileUtils.deleteQuietly(textFile(eldest.getKey()));
+            FileUtils.deleteQuietly(metadataFile(eldest.getKey()));
+        }
+    }
+
+    private void remove(String hash) {
+        Long entrySize = entries.remove(hash);
+        if (entrySize != null) {
+            size -= entrySize;
+        }
+    }
+
+    private static String entryKey(String contentHash, String mimeType) {
+        return Hashing.sha256().hashString(contentHash + "\n" + mimeType, StandardCharsets.UTF_8).toString();
+    }
+
+    private File textFile(String hash) {
+        return new File(directory, hash + TEXT_SUFFIX);
+    }
+
+    private File metadataFile(String hash) {
+        return new File(directory, hash + METADATA_SUFFIX);
+    }
+}
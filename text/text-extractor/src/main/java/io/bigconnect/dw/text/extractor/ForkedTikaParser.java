@@ -0,0 +1,309 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.extractor;
+
+import com.mware.core.util.BcLogger;
+import com.mware.core.util.BcLoggerFactory;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs Tika parsers in child JVMs so a pathological document can neither hang nor exhaust the heap of
+ * the data worker. The children run {@link ForkedTikaServer}: the document is spooled to a file, its path is
+ * sent to an idle child, and the SAX events and the metadata the child produces are read back on the calling
+ * thread. A parse that runs past the timeout gets its child process killed and its handler detached, so nothing
+ * is written to the caller's handler once the call returned; the next parse starts a fresh child.
+ */
+public class ForkedTikaParser {
+    private static final BcLogger LOGGER = BcLoggerFactory.getLogger(ForkedTikaParser.class);
+    private static final Map<String, ForkedTikaParser> INSTANCES = new HashMap<>();
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "tika-fork-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Parser parser;
+    private final List<String> command;
+    private final long timeoutMs;
+    private final Semaphore permits;
+    private final Queue<Child> idleChildren = new ConcurrentLinkedQueue<>();
+
+    ForkedTikaParser(Parser parser, int poolSize, String javaCommand, String maxHeap, long timeoutMs) {
+        this.parser = parser;
+        this.command = Arrays.asList(
+                javaCommand,
+                "-Xmx" + maxHeap,
+                "-Djava.awt.headless=true",
+                "-cp", classPath(ForkedTikaServer.class, Parser.class, parser.getClass()),
+                ForkedTikaServer.class.getName()
+        );
+        this.timeoutMs = timeoutMs;
+        this.permits = new Semaphore(poolSize);
+    }
+
+    /**
+     * The child JVMs are shared by all the workers of the process that use the same settings. The parser
+     * of the first caller is used by the children.
+     */
+    public static synchronized ForkedTikaParser getInstance(Parser parser, int poolSize, String javaCommand, String maxHeap, long timeoutMs) {
+        String key = poolSize + "|" + javaCommand + "|" + maxHeap + "|" + timeoutMs;
+        return INSTANCES.computeIfAbsent(key, k -> new ForkedTikaParser(parser, poolSize, javaCommand, maxHeap, timeoutMs));
+    }
+
+    public void parse(InputStream stream, ContentHandler handler, Metadata metadata, ParseContext context)
+            throws IOException, SAXException, TikaException {
+        TemporaryResources tmp = new TemporaryResources();
+        try {
+            File file = TikaInputStream.get(stream, tmp).getFile();
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TikaException("Interrupted while waiting for a forked parser", e);
+            }
+            try {
+                parse(file, handler, metadata, context);
+            } finally {
+                permits.release();
+            }
+        } finally {
+            tmp.dispose();
+        }
+    }
+
+    private void parse(File file, ContentHandler handler, Metadata metadata, ParseContext context)
+            throws IOException, SAXException, TikaException {
+        Child child = idleChildren.poll();
+        if (child == null || !child.process.isAlive()) {
+            child = new Child();
+        }
+
+        Child parsingChild = child;
+        ScheduledFuture<?> watchdog = WATCHDOG.schedule(parsingChild::timeOut, timeoutMs, TimeUnit.MILLISECONDS);
+        // the child is only reused if its answer was read to the end
+        boolean reusable = false;
+        String error;
+        try {
+            error = child.parse(file, handler, metadata, context);
+            reusable = true;
+        } catch (IOException e) {
+            if (child.timedOut) {
+                throw new TikaException("Forked parser timed out after " + timeoutMs + "ms");
+            }
+            throw new TikaException("Forked parser died", e);
+        } finally {
+            if (!watchdog.cancel(false)) {
+                reusable = false;
+            }
+            if (reusable) {
+                idleChildren.add(child);
+            } else {
+                child.destroy();
+            }
+        }
+
+        if (child.timedOut) {
+            throw new TikaException("Forked parser timed out after " + timeoutMs + "ms");
+        }
+        if (error != null) {
+            throw new TikaException("Forked parser failed: " + error);
+        }
+    }
+
+    /**
+     * Kills the idle children.
+     */
+    void close() {
+        Child child;
+        while ((child = idleChildren.poll()) != null) {
+            child.destroy();
+        }
+    }
+
+    private static String classPath(Class<?>... classes) {
+        Set<String> entries = new LinkedHashSet<>(Arrays.asList(System.getProperty("java.class.path", "").split(File.pathSeparator)));
+        for (Class<?> c : classes) {
+            for (ClassLoader loader = c.getClassLoader(); loader != null; loader = loader.getParent()) {
+                if (loader instanceof URLClassLoader) {
+                    for (URL url : ((URLClassLoader) loader).getURLs()) {
+                        addClassPathEntry(entries, url);
+                    }
+                }
+            }
+            CodeSource codeSource = c.getProtectionDomain().getCodeSource();
+            if (codeSource != null) {
+                addClassPathEntry(entries, codeSource.getLocation());
+            }
+        }
+        entries.remove("");
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static void addClassPathEntry(Set<String> entries, URL url) {
+        if (url != null && "file".equals(url.getProtocol())) {
+            try {
+                entries.add(new File(url.toURI()).getPath());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                LOGGER.debug("Skipping class path entry %s", url);
+            }
+        }
+    }
+
+    private class Child {
+        private final Process process;
+        private final ObjectOutputStream out;
+        private final DataInputStream in;
+        private volatile boolean timedOut;
+
+        Child() throws IOException {
+            process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            out = new ObjectOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            try {
+                out.writeObject(parser);
+                out.flush();
+            } catch (IOException e) {
+                destroy();
+                throw e;
+            }
+        }
+
+        /**
+         * @return the error reported by the child, or null if the document was parsed
+         */
+        String parse(File file, ContentHandler handler, Metadata metadata, ParseContext context) throws IOException, SAXException {
+            out.writeObject(file.getAbsolutePath());
+            out.writeObject(metadata);
+            out.writeObject(context);
+            // the same metadata and context objects are sent again with the next document
+            out.reset();
+            out.flush();
+
+            Metadata returned = new Metadata();
+            while (true) {
+                byte event = in.readByte();
+                if (timedOut) {
+                    // the handler is detached as soon as the parse timed out
+                    throw new IOException("Forked parser was killed");
+                }
+                switch (event) {
+                    case ForkedTikaServer.START_DOCUMENT:
+                        handler.startDocument();
+                        break;
+                    case ForkedTikaServer.END_DOCUMENT:
+                        handler.endDocument();
+                        break;
+                    case ForkedTikaServer.START_PREFIX_MAPPING:
+                        handler.startPrefixMapping(readString(), readString());
+                        break;
+                    case ForkedTikaServer.END_PREFIX_MAPPING:
+                        handler.endPrefixMapping(readString());
+                        break;
+                    case ForkedTikaServer.START_ELEMENT:
+                        String uri = readString();
+                        String localName = readString();
+                        String qName = readString();
+                        AttributesImpl attributes = new AttributesImpl();
+                        int count = in.readInt();
+                        for (int i = 0; i < count; i++) {
+                            attributes.addAttribute(readString(), readString(), readString(), readString(), readString());
+                        }
+                        handler.startElement(uri, localName, qName, attributes);
+                        break;
+                    case ForkedTikaServer.END_ELEMENT:
+                        handler.endElement(readString(), readString(), readString());
+                        break;
+                    case ForkedTikaServer.CHARACTERS:
+                        char[] characters = readString().toCharArray();
+                        handler.characters(characters, 0, characters.length);
+                        break;
+                    case ForkedTikaServer.IGNORABLE_WHITESPACE:
+                        char[] whitespace = readString().toCharArray();
+                        handler.ignorableWhitespace(whitespace, 0, whitespace.length);
+                        break;
+                    case ForkedTikaServer.METADATA:
+                        returned.add(readString(), readString());
+                        break;
+                    case ForkedTikaServer.DONE:
+                        for (String name : returned.names()) {
+                            metadata.remove(name);
+                            for (String value : returned.getValues(name)) {
+                                metadata.add(name, value);
+                            }
+                        }
+                        return null;
+                    case ForkedTikaServer.ERROR:
+                        return readString();
+                    default:
+                        throw new IOException("Unexpected event from forked parser: " + event);
+                }
+            }
+        }
+
+        private String readString() throws IOException {
+            return ForkedTikaServer.readString(in);
+        }
+
+        void timeOut() {
+            timedOut = true;
+            LOGGER.warn("Killing forked Tika parser that did not finish in %dms", timeoutMs);
+            destroy();
+        }
+
+        void destroy() {
+            process.destroyForcibly();
+        }
+    }
+}
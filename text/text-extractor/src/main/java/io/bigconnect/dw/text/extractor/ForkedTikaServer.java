@@ -0,0 +1,200 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.extractor;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * Entry point of the child JVMs started by {@link ForkedTikaParser}. The parser is read once from stdin, then every
+ * request names a spooled document, which is parsed with its SAX events, the filled-in metadata and the outcome
+ * written back to stdout. Whatever the parsers print goes to stderr, so it can't corrupt the event stream.
+ */
+public final class ForkedTikaServer {
+    static final byte START_DOCUMENT = 1;
+    static final byte END_DOCUMENT = 2;
+    static final byte START_PREFIX_MAPPING = 3;
+    static final byte END_PREFIX_MAPPING = 4;
+    static final byte START_ELEMENT = 5;
+    static final byte END_ELEMENT = 6;
+    static final byte CHARACTERS = 7;
+    static final byte IGNORABLE_WHITESPACE = 8;
+    static final byte METADATA = 9;
+    static final byte DONE = 10;
+    static final byte ERROR = 11;
+
+    private ForkedTikaServer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(System.in));
+        Parser parser = (Parser) in.readObject();
+        while (true) {
+            String path;
+            try {
+                path = (String) in.readObject();
+            } catch (EOFException e) {
+                // the parent closed the pipe
+                return;
+            }
+            Metadata metadata = (Metadata) in.readObject();
+            ParseContext context = (ParseContext) in.readObject();
+
+            try (InputStream stream = TikaInputStream.get(Paths.get(path))) {
+                parser.parse(stream, new EventWriter(out), metadata, context);
+                for (String name : metadata.names()) {
+                    for (String value : metadata.getValues(name)) {
+                        out.writeByte(METADATA);
+                        writeString(out, name);
+                        writeString(out, value);
+                    }
+                }
+                out.writeByte(DONE);
+            } catch (Exception e) {
+                out.writeByte(ERROR);
+                writeString(out, e.toString());
+            }
+            out.flush();
+        }
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class EventWriter extends DefaultHandler {
+        private final DataOutputStream out;
+
+        EventWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            write(START_DOCUMENT);
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            write(END_DOCUMENT);
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            write(START_PREFIX_MAPPING, prefix, uri);
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            write(END_PREFIX_MAPPING, prefix);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            try {
+                out.writeByte(START_ELEMENT);
+                writeString(out, uri);
+                writeString(out, localName);
+                writeString(out, qName);
+                out.writeInt(attributes.getLength());
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    writeString(out, attributes.getURI(i));
+                    writeString(out, attributes.getLocalName(i));
+                    writeString(out, attributes.getQName(i));
+                    writeString(out, attributes.getType(i));
+                    writeString(out, attributes.getValue(i));
+                }
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            write(END_ELEMENT, uri, localName, qName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            write(CHARACTERS, new String(ch, start, length));
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            write(IGNORABLE_WHITESPACE, new String(ch, start, length));
+        }
+
+        private void write(byte event, String... values) throws SAXException {
+            try {
+                out.writeByte(event);
+                for (String value : values) {
+                    writeString(out, value);
+                }
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+    }
+}
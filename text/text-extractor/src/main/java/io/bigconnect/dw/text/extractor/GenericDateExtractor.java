@@ -39,37 +39,91 @@ package io.bigconnect.dw.text.extractor;
 import com.mware.core.util.BcLogger;
 import com.mware.core.util.BcLoggerFactory;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
+import java.text.ParsePosition;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class GenericDateExtractor {
     private static final BcLogger LOGGER = BcLoggerFactory.getLogger(GenericDateExtractor.class);
-    private static List<String> DATE_FORMATS = new ArrayList<>();
 
-    static {
-        DATE_FORMATS.add("yyyy-MM-dd'T'HH:mm:ssX");
-        DATE_FORMATS.add("yyyy-MM-dd'T'HH:mm:ssz");
-        DATE_FORMATS.add("yyyy-MM-dd'T'HH:mm:ssZ");
-        DATE_FORMATS.add("EEE MMM dd HH:mm:ss z yyyy");
-        DATE_FORMATS.add("'D'':'yyyyMMddHHmmss");
-    }
+    // tried in order of hit rate, the order is adjusted as dates are parsed
+    private static volatile DateFormat[] dateFormats = {
+            new DateFormat("yyyy-MM-dd'T'HH:mm:ss[XXX][XX][X]", true),
+            new DateFormat("yyyy-MM-dd'T'HH:mm:ssz", true),
+            new DateFormat("yyyy-MM-dd'T'HH:mm:ssZ", true),
+            new DateFormat("EEE MMM dd HH:mm:ss z yyyy", true),
+            new DateFormat("'D:'yyyyMMddHHmmss", false)
+    };
 
     public static ZonedDateTime extractSingleDate(String dateString) {
-        for (String dateFormat : DATE_FORMATS) {
-            try {
-                LOGGER.debug("parsing %s using %s", dateString, dateFormat);
-                Date result = new SimpleDateFormat(dateFormat).parse(dateString);
-                LOGGER.debug("parsing %s using %s succeeded %s", dateString, dateFormat, new SimpleDateFormat(DATE_FORMATS.get(0)).format(result));
-                ZonedDateTime.ofInstant(result.toInstant(), ZoneOffset.systemDefault());
-            } catch (ParseException e) {
-                LOGGER.debug("could not parse %s using %s", dateString, dateFormat, e);
+        if (dateString == null) {
+            return null;
+        }
+
+        DateFormat[] formats = dateFormats;
+        for (int i = 0; i < formats.length; i++) {
+            ZonedDateTime result = formats[i].parse(dateString);
+            if (result != null) {
+                LOGGER.debug("parsing %s using %s succeeded %s", dateString, formats[i].pattern, result);
+                promote(formats, i);
+                return result;
             }
+            LOGGER.debug("could not parse %s using %s", dateString, formats[i].pattern);
         }
         return null;
     }
+
+    private static void promote(DateFormat[] formats, int index) {
+        long hits = formats[index].hits.incrementAndGet();
+        if (index > 0 && hits > formats[index - 1].hits.get()) {
+            // racing updates may lose a swap, which only delays the reordering
+            DateFormat[] reordered = formats.clone();
+            reordered[index] = formats[index - 1];
+            reordered[index - 1] = formats[index];
+            dateFormats = reordered;
+        }
+    }
+
+    private static class DateFormat {
+        private final String pattern;
+        private final DateTimeFormatter formatter;
+        private final boolean zoned;
+        private final AtomicLong hits = new AtomicLong();
+
+        DateFormat(String pattern, boolean zoned) {
+            this.pattern = pattern;
+            this.formatter = DateTimeFormatter.ofPattern(pattern, Locale.ENGLISH);
+            this.zoned = zoned;
+        }
+
+        /**
+         * Like SimpleDateFormat, only a prefix of the text has to match. Dates without a zone are in the
+         * system default zone, and every result is converted to it.
+         */
+        ZonedDateTime parse(String text) {
+            ParsePosition position = new ParsePosition(0);
+            if (formatter.parseUnresolved(text, position) == null || position.getErrorIndex() >= 0) {
+                return null;
+            }
+
+            try {
+                TemporalAccessor parsed = formatter.parse(text.subSequence(0, position.getIndex()));
+                Instant instant;
+                if (parsed.query(TemporalQueries.zone()) != null) {
+                    instant = ZonedDateTime.from(parsed).toInstant();
+                } else if (zoned) {
+                    return null;
+                } else {
+                    instant = LocalDateTime.from(parsed).atZone(ZoneId.systemDefault()).toInstant();
+                }
+                return ZonedDateTime.ofInstant(instant, ZoneId.systemDefault());
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+    }
 }
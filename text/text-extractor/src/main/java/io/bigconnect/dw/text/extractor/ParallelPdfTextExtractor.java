@@ -0,0 +1,186 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.extractor;
+
+import com.mware.core.util.BcLogger;
+import com.mware.core.util.BcLoggerFactory;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.tika.metadata.Metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts the text of large PDFs by splitting them into page ranges that are stripped in parallel,
+ * each from its own {@link PDDocument} since those are not thread-safe. The ranges are written out in
+ * page order. The document information and page count are copied into the Tika metadata under the
+ * names the Tika PDF parser uses, so the rest of the extraction does not need to tell the two apart.
+ * <p>
+ * The page ranges run on a process-wide pool, see {@link #getExecutor(int)}, so all the worker instances
+ * of a process share the same threads.
+ */
+public class ParallelPdfTextExtractor {
+    private static final BcLogger LOGGER = BcLoggerFactory.getLogger(ParallelPdfTextExtractor.class);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX");
+    private static final Map<Integer, ExecutorService> EXECUTORS = new HashMap<>();
+
+    private final ExecutorService executor;
+    private final int pagesPerTask;
+    private final int minPages;
+
+    public ParallelPdfTextExtractor(ExecutorService executor, int pagesPerTask, int minPages) {
+        this.executor = executor;
+        this.pagesPerTask = pagesPerTask;
+        this.minPages = minPages;
+    }
+
+    /**
+     * @return the shared pool with the given number of daemon threads, created on first use
+     */
+    public static synchronized ExecutorService getExecutor(int threads) {
+        return EXECUTORS.computeIfAbsent(threads, key -> {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "tika-pdf-pages-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        });
+    }
+
+    /**
+     * @return false if the document is too small or encrypted and should go through Tika instead
+     */
+    public boolean extract(File pdf, Metadata metadata, Writer out) throws IOException {
+        int pageCount;
+        try (PDDocument document = load(pdf)) {
+            if (document.isEncrypted()) {
+                return false;
+            }
+            pageCount = document.getNumberOfPages();
+            if (pageCount < minPages) {
+                return false;
+            }
+            copyMetadata(document, metadata);
+        }
+
+        LOGGER.debug("extracting %d pages in ranges of %d", pageCount, pagesPerTask);
+        List<Future<String>> ranges = new ArrayList<>();
+        for (int startPage = 1; startPage <= pageCount; startPage += pagesPerTask) {
+            int start = startPage;
+            int end = Math.min(startPage + pagesPerTask - 1, pageCount);
+            ranges.add(executor.submit(() -> extractRange(pdf, start, end)));
+        }
+
+        try {
+            for (Future<String> range : ranges) {
+                out.write(range.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting PDF text", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not extract PDF text", e.getCause());
+        } finally {
+            for (Future<String> range : ranges) {
+                range.cancel(true);
+            }
+        }
+        return true;
+    }
+
+    private static String extractRange(File pdf, int startPage, int endPage) throws IOException {
+        try (PDDocument document = load(pdf)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            // same paragraph detection as BcParserConfig
+            stripper.setDropThreshold(2.0f);
+            stripper.setLineSeparator("\n");
+            stripper.setParagraphEnd("\n");
+            stripper.setPageEnd("\n");
+            stripper.setStartPage(startPage);
+            stripper.setEndPage(endPage);
+            return stripper.getText(document);
+        }
+    }
+
+    private static PDDocument load(File pdf) throws IOException {
+        return PDDocument.load(pdf, MemoryUsageSetting.setupTempFileOnly());
+    }
+
+    private static void copyMetadata(PDDocument document, Metadata metadata) {
+        metadata.set("xmpTPg:NPages", Integer.toString(document.getNumberOfPages()));
+
+        PDDocumentInformation info = document.getDocumentInformation();
+        if (info == null) {
+            return;
+        }
+        setIfPresent(metadata, "title", info.getTitle());
+        setIfPresent(metadata, "subject", info.getSubject());
+        setIfPresent(metadata, "Author", info.getAuthor());
+        setIfPresent(metadata, "Creation-Date", formatDate(info.getCreationDate()));
+        setIfPresent(metadata, "Last-Modified", formatDate(info.getModificationDate()));
+    }
+
+    private static void setIfPresent(Metadata metadata, String name, String value) {
+        if (value != null && metadata.get(name) == null) {
+            metadata.set(name, value);
+        }
+    }
+
+    private static String formatDate(Calendar calendar) {
+        if (calendar == null) {
+            return null;
+        }
+        return DATE_FORMAT.format(calendar.toInstant().atOffset(ZoneOffset.UTC));
+    }
+}
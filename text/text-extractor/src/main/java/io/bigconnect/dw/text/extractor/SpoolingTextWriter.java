@@ -0,0 +1,115 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.extractor;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer that keeps UTF-8 encoded text in memory until it grows past a threshold and then
+ * moves it to a temporary file. The written text can be read back as a stream, which
+ * lets large extracted texts be stored without ever holding them on the heap.
+ */
+public class SpoolingTextWriter extends Writer {
+    private final DeferredFileOutputStream output;
+    private final Writer writer;
+    private boolean closed;
+
+    public SpoolingTextWriter(int threshold) {
+        this.output = new DeferredFileOutputStream(threshold, "tika-text-", ".txt", null);
+        this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        writer.write(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        writer.write(str, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            writer.close();
+            closed = true;
+        }
+    }
+
+    public long getByteCount() {
+        return output.getByteCount();
+    }
+
+    public boolean isInMemory() {
+        return output.isInMemory();
+    }
+
+    /**
+     * Closes the writer and opens a stream over everything written so far.
+     */
+    public InputStream openInputStream() throws IOException {
+        close();
+        if (output.isInMemory()) {
+            return new ByteArrayInputStream(output.getData());
+        }
+        return new BufferedInputStream(new FileInputStream(output.getFile()));
+    }
+
+    /**
+     * Removes the temporary file, if the text was spooled to disk.
+     */
+    public void dispose() {
+        try {
+            close();
+        } catch (IOException e) {
+            // nothing left to flush
+        }
+        if (!output.isInMemory()) {
+            FileUtils.deleteQuietly(output.getFile());
+        }
+    }
+}
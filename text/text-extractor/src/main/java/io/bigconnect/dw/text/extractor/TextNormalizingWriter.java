@@ -0,0 +1,188 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.extractor;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.text.Normalizer;
+
+/**
+ * Cleans up extracted text in a single pass while it is being written:
+ * <ul>
+ *     <li>carriage returns become line breaks</li>
+ *     <li>tabs and non-breaking spaces become spaces</li>
+ *     <li>single line breaks (paragraph wrapping) become spaces</li>
+ *     <li>any run of spaces and line breaks that contains a line break becomes exactly two line breaks</li>
+ *     <li>remaining runs of spaces collapse into one</li>
+ * </ul>
+ * The result is NFC normalized. Text is handed downstream in chunks that always end before
+ * whitespace, which never takes part in a canonical composition, so chunks normalize independently.
+ */
+public class TextNormalizingWriter extends FilterWriter {
+    private static final int CHUNK_SIZE = 8192;
+
+    private final StringBuilder chunk = new StringBuilder(CHUNK_SIZE);
+    private char previous;
+    private boolean pendingNewline;
+    private char beforePendingNewline;
+    private boolean inWhitespace;
+    private boolean whitespaceHasNewline;
+    private boolean finished;
+
+    public TextNormalizingWriter(Writer out) {
+        super(out);
+    }
+
+    public static String normalize(String text) {
+        StringWriter out = new StringWriter(text.length());
+        TextNormalizingWriter writer = new TextNormalizingWriter(out);
+        try {
+            writer.write(text);
+            writer.finish();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not normalize text", e);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        accept((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            accept(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            accept(str.charAt(i));
+        }
+    }
+
+    private void accept(char c) throws IOException {
+        if (c == '\r') {
+            c = '\n';
+        } else if (c == '\t' || c == '\u00A0') {
+            c = ' ';
+        }
+
+        // a line break can only be classified once the next character is known
+        if (pendingNewline) {
+            boolean wrapping = beforePendingNewline != '\n' && c != '\n';
+            emit(wrapping ? ' ' : '\n');
+            pendingNewline = false;
+        }
+
+        if (c == '\n') {
+            pendingNewline = true;
+            beforePendingNewline = previous;
+        } else {
+            emit(c);
+        }
+        previous = c;
+    }
+
+    private void emit(char c) throws IOException {
+        if (c == ' ' || c == '\n') {
+            inWhitespace = true;
+            whitespaceHasNewline |= c == '\n';
+            return;
+        }
+        if (inWhitespace) {
+            endWhitespace();
+        }
+        chunk.append(c);
+    }
+
+    private void endWhitespace() throws IOException {
+        if (chunk.length() >= CHUNK_SIZE) {
+            flushChunk();
+        }
+        chunk.append(whitespaceHasNewline ? "\n\n" : " ");
+        inWhitespace = false;
+        whitespaceHasNewline = false;
+    }
+
+    private void flushChunk() throws IOException {
+        if (chunk.length() == 0) {
+            return;
+        }
+        if (Normalizer.isNormalized(chunk, Normalizer.Form.NFC)) {
+            out.append(chunk);
+        } else {
+            out.write(Normalizer.normalize(chunk, Normalizer.Form.NFC));
+        }
+        chunk.setLength(0);
+    }
+
+    /**
+     * Writes out everything still held back without closing the underlying writer.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (pendingNewline) {
+            emit(beforePendingNewline != '\n' ? ' ' : '\n');
+            pendingNewline = false;
+        }
+        if (inWhitespace) {
+            endWhitespace();
+        }
+        flushChunk();
+        out.flush();
+        finished = true;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+}
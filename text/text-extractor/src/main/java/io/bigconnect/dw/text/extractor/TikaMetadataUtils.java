@@ -38,32 +38,59 @@ package io.bigconnect.dw.text.extractor;
 
 import org.apache.tika.metadata.Metadata;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Utility to determine if any keys in a list exist in the provided metadata
- * map. Limited to ASCII at this point, and probably not optimal
+ * map. Limited to ASCII at this point.
  */
 public class TikaMetadataUtils {
     public static String findKey(List<String> potentialKeys, Metadata metadata) {
-        checkNotNull(potentialKeys, "potentialKeys cannot be null");
-        String discoveredKey = null;
-        for (String key : potentialKeys) {
-            for (String name : metadata.names()) {
-                if (key.equalsIgnoreCase(name)) {
-                    discoveredKey = name;
-                    break;
-                }
+        return index(metadata).findKey(potentialKeys);
+    }
+
+    /**
+     * Case-folds the metadata names once so that every following lookup is a hash lookup per
+     * candidate key. The index does not see names added to the metadata after it was built.
+     */
+    public static Index index(Metadata metadata) {
+        return new Index(metadata);
+    }
+
+    public static class Index {
+        private final Metadata metadata;
+        private final Map<String, String> names;
+
+        private Index(Metadata metadata) {
+            this.metadata = metadata;
+            String[] metadataNames = metadata.names();
+            this.names = new HashMap<>(metadataNames.length * 2);
+            for (String name : metadataNames) {
+                names.putIfAbsent(name.toLowerCase(Locale.ROOT), name);
             }
+        }
 
-            if (discoveredKey != null) {
-                break;
+        /**
+         * @return the metadata name of the first of the keys that is present, in the preference order of the list
+         */
+        public String findKey(List<String> potentialKeys) {
+            checkNotNull(potentialKeys, "potentialKeys cannot be null");
+            for (String key : potentialKeys) {
+                String name = names.get(key.toLowerCase(Locale.ROOT));
+                if (name != null) {
+                    return name;
+                }
             }
+            return null;
         }
 
-        return discoveredKey;
+        public String get(String name) {
+            return metadata.get(name);
+        }
     }
-
 }
@@ -37,6 +37,8 @@
 package io.bigconnect.dw.text.extractor;
 
 import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
 import com.google.inject.Inject;
 import com.mware.core.ingest.dataworker.DataWorker;
 import com.mware.core.ingest.dataworker.DataWorkerData;
@@ -59,7 +61,7 @@ import com.mware.ge.values.storable.*;
 import de.l3s.boilerpipe.BoilerpipeProcessingException;
 import de.l3s.boilerpipe.extractors.ArticleExtractor;
 import de.l3s.boilerpipe.extractors.NumWordsRulesExtractor;
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.exception.TikaException;
@@ -122,8 +124,30 @@ public class TikaTextExtractorWorker extends DataWorker {
     private static final String CUSTOM_FLICKR_METADATA_KEYS_PROPERTY = "tika.extraction.customflickrmetadatakeys";
     private static final String NUMBER_OF_PAGES_PROPERTY = "tika.extraction.numberofpageskeys";
 
+    public static final String CONFIG_SPOOL_THRESHOLD = "tika.extractor.spool-threshold";
+    private static final int DEFAULT_SPOOL_THRESHOLD = 4 * 1024 * 1024;
+    public static final String CONFIG_FORK = "tika.extractor.fork";
+    public static final String CONFIG_FORK_POOL_SIZE = "tika.extractor.fork.pool-size";
+    public static final String CONFIG_FORK_JAVA = "tika.extractor.fork.java";
+    public static final String CONFIG_FORK_MAX_HEAP = "tika.extractor.fork.max-heap";
+    public static final String CONFIG_FORK_TIMEOUT_MS = "tika.extractor.fork.timeout-ms";
+    public static final String CONFIG_PDF_PARALLEL = "tika.extractor.pdf.parallel";
+    public static final String CONFIG_PDF_THREADS = "tika.extractor.pdf.threads";
+    public static final String CONFIG_PDF_PAGES_PER_TASK = "tika.extractor.pdf.pages-per-task";
+    public static final String CONFIG_PDF_MIN_PAGES = "tika.extractor.pdf.min-pages";
+    public static final String CONFIG_CACHE_DIR = "tika.extractor.cache.dir";
+    public static final String CONFIG_CACHE_MAX_SIZE_MB = "tika.extractor.cache.max-size-mb";
+
     private static final double SYSTEM_ASSIGNED_CONFIDENCE = 0.4;
 
+    private static final String[] HTML_ENTITIES = {
+            "&mdash;", "--",
+            "&ldquo;", "\"",
+            "&rdquo;", "\"",
+            "&lsquo;", "'",
+            "&rsquo;", "'"
+    };
+
     private final TikaTextExtractorWorkerConfiguration configuration;
     private final FileSystemRepository fileSystemRepository;
 
@@ -137,6 +161,15 @@ public class TikaTextExtractorWorker extends DataWorker {
     private List<String> customFlickrMetadataKeys;
     private List<String> authorKeys;
     private List<String> numberOfPagesKeys;
+    private int spoolThreshold;
+
+    // the parsers are thread-safe, only the parse context is kept per thread
+    private CompositeParser compositeParser;
+    private PDFParserConfig pdfParserConfig;
+    private ThreadLocal<ParseContext> parseContext;
+    private ForkedTikaParser forkedParser;
+    private ParallelPdfTextExtractor pdfTextExtractor;
+    private ExtractedTextCache textCache;
 
     @Inject
     public TikaTextExtractorWorker(
@@ -172,6 +205,41 @@ public class TikaTextExtractorWorker extends DataWorker {
         customFlickrMetadataKeys = Arrays.asList(tikaProperties.getProperty(CUSTOM_FLICKR_METADATA_KEYS_PROPERTY, "Unknown tag (0x9286)").split(","));
         authorKeys = Arrays.asList(tikaProperties.getProperty(AUTHOR_PROPERTY, "author").split(","));
         numberOfPagesKeys = Arrays.asList(tikaProperties.getProperty(NUMBER_OF_PAGES_PROPERTY, "xmpTPg:NPages").split(","));
+
+        spoolThreshold = getConfiguration().getInt(CONFIG_SPOOL_THRESHOLD, DEFAULT_SPOOL_THRESHOLD);
+
+        TikaConfig tikaConfig = TikaConfig.getDefaultConfig();
+        compositeParser = new CompositeParser(tikaConfig.getMediaTypeRegistry(), tikaConfig.getParser());
+        pdfParserConfig = new BcParserConfig();
+        parseContext = ThreadLocal.withInitial(() -> {
+            ParseContext context = new ParseContext();
+            context.set(PDFParserConfig.class, pdfParserConfig);
+            return context;
+        });
+
+        if (getConfiguration().getBoolean(CONFIG_FORK, false)) {
+            forkedParser = ForkedTikaParser.getInstance(
+                    compositeParser,
+                    getConfiguration().getInt(CONFIG_FORK_POOL_SIZE, Runtime.getRuntime().availableProcessors()),
+                    getConfiguration().get(CONFIG_FORK_JAVA, "java"),
+                    getConfiguration().get(CONFIG_FORK_MAX_HEAP, "512m"),
+                    getConfiguration().getInt(CONFIG_FORK_TIMEOUT_MS, 120000)
+            );
+        } else if (getConfiguration().getBoolean(CONFIG_PDF_PARALLEL, false)) {
+            // the page-parallel path runs in-process, so it is only used when parsing isn't forked
+            int threads = getConfiguration().getInt(CONFIG_PDF_THREADS, Runtime.getRuntime().availableProcessors());
+            pdfTextExtractor = new ParallelPdfTextExtractor(
+                    ParallelPdfTextExtractor.getExecutor(threads),
+                    getConfiguration().getInt(CONFIG_PDF_PAGES_PER_TASK, 25),
+                    getConfiguration().getInt(CONFIG_PDF_MIN_PAGES, 50)
+            );
+        }
+
+        String cacheDir = getConfiguration().get(CONFIG_CACHE_DIR, "");
+        if (!Strings.isNullOrEmpty(cacheDir)) {
+            long maxSize = getConfiguration().getInt(CONFIG_CACHE_MAX_SIZE_MB, 1024) * 1024L * 1024L;
+            textCache = ExtractedTextCache.getInstance(new File(cacheDir), maxSize);
+        }
     }
 
     @Override
@@ -189,7 +257,51 @@ public class TikaTextExtractorWorker extends DataWorker {
         metadata.set(Metadata.CONTENT_TYPE, mimeType.stringValue());
 
         StreamingPropertyValue rawValue = (StreamingPropertyValue) raw.getValue();
-        String text = extractText(rawValue.getInputStream(), mimeType.stringValue(), metadata);
+        SpoolingTextWriter text = new SpoolingTextWriter(spoolThreshold);
+        TemporaryResources tmp = new TemporaryResources();
+        try {
+            InputStream rawIn = rawValue.getInputStream();
+            HashingInputStream hashingIn = null;
+            if (textCache != null) {
+                hashingIn = new HashingInputStream(Hashing.sha256(), rawIn);
+                rawIn = hashingIn;
+            }
+            TikaInputStream tis = TikaInputStream.get(rawIn, tmp);
+
+            String contentHash = null;
+            if (hashingIn != null) {
+                // spooling the raw value hashes it on the way, parsing then reads from the spooled file
+                tis.getFile();
+                contentHash = hashingIn.hash().toString();
+            }
+
+            if (contentHash != null && textCache.read(contentHash, mimeType.stringValue(), metadata, text)) {
+                LOGGER.debug("using cached text for %s", contentHash);
+            } else {
+                extractText(tis, mimeType.stringValue(), metadata, text);
+                if (contentHash != null) {
+                    try (InputStream cachedText = text.openInputStream()) {
+                        textCache.write(contentHash, mimeType.stringValue(), metadata, cachedText);
+                    }
+                }
+            }
+            saveExtractedText(data, element, raw, TikaMetadataUtils.index(metadata), text, charset);
+        } finally {
+            text.dispose();
+            tmp.dispose();
+        }
+
+        LOGGER.info("Ended Tika text extractor");
+    }
+
+    private void saveExtractedText(
+            DataWorkerData data,
+            Element element,
+            Property raw,
+            TikaMetadataUtils.Index metadata,
+            SpoolingTextWriter text,
+            Charset charset
+    ) throws IOException {
 
         final String propertyKey = raw.getKey();
         TikaTextExtractorWorkerConfiguration.TextExtractMapping textExtractMapping
@@ -219,10 +331,10 @@ public class TikaTextExtractorWorker extends DataWorker {
             try {
                 JSONObject customImageMetadataJson = new JSONObject(customImageMetadata);
 
-                text = new JSONObject(customImageMetadataJson.get("description").toString()).get("_content") +
+                String imageText = new JSONObject(customImageMetadataJson.get("description").toString()).get("_content") +
                         "\n" + customImageMetadataJson.get("tags").toString();
                 StreamingPropertyValue textValue
-                        = new DefaultStreamingPropertyValue(new ByteArrayInputStream(text.getBytes(charset)), StringValue.class);
+                        = new DefaultStreamingPropertyValue(new ByteArrayInputStream(imageText.getBytes(charset)), StringValue.class);
                 addTextProperty(textExtractMapping, m, propertyKey, textValue, textMetadata, data.getProperty().getVisibility());
 
                 ZonedDateTime lastUpdate = GenericDateExtractor
@@ -236,7 +348,7 @@ public class TikaTextExtractorWorker extends DataWorker {
                 LOGGER.warn("Image returned invalid custom metadata");
             }
         } else {
-            StreamingPropertyValue textValue = new DefaultStreamingPropertyValue(new ByteArrayInputStream(text.getBytes(charset)), StringValue.class);
+            StreamingPropertyValue textValue = new DefaultStreamingPropertyValue(text.openInputStream(), StringValue.class);
             addTextProperty(textExtractMapping, m, propertyKey, textValue, textMetadata, data.getProperty().getVisibility());
 
             BcSchema.MODIFIED_DATE.setProperty(m, extractDate(metadata), defaultVisibility);
@@ -273,8 +385,6 @@ public class TikaTextExtractorWorker extends DataWorker {
                 ElementOrPropertyStatus.UPDATE,
                 null
         );
-
-        LOGGER.info("Ended Tika text extractor");
     }
 
     private void addTextProperty(
@@ -288,62 +398,57 @@ public class TikaTextExtractorWorker extends DataWorker {
         m.addPropertyValue(propertyKey, textExtractMapping.getExtractedTextPropertyName(), textValue, textMetadata, visibility);
     }
 
-    private String extractText(InputStream in, String mimeType, Metadata metadata) throws IOException, SAXException, TikaException, BoilerpipeProcessingException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        IOUtils.copy(in, out);
-        byte[] textBytes = out.toByteArray();
-        String text;
-
+    private void extractText(TikaInputStream tis, String mimeType, Metadata metadata, Writer out) throws IOException, SAXException, TikaException, BoilerpipeProcessingException {
         metadata.set(Metadata.CONTENT_TYPE, mimeType);
-        String bodyContent = extractTextWithTika(textBytes, metadata);
 
-        if (isHtml(mimeType)) {
-            text = extractTextFromHtml(IOUtils.toString(textBytes, "UTF-8"));
-            if (text == null || text.length() == 0) {
-                text = cleanExtractedText(bodyContent);
+        if (!isHtml(mimeType)) {
+            TextNormalizingWriter normalizingWriter = new TextNormalizingWriter(out);
+            if (pdfTextExtractor == null || !isPdf(mimeType)
+                    || !pdfTextExtractor.extract(tis.getFile(), metadata, normalizingWriter)) {
+                extractTextWithTika(tis, metadata, normalizingWriter);
             }
-        } else {
-            text = cleanExtractedText(bodyContent);
+            normalizingWriter.finish();
+            return;
         }
 
-        return Normalizer.normalize(text, Normalizer.Form.NFC);
+        // boilerpipe needs the markup as well, so let Tika spool it once and read it back from disk
+        File htmlFile = tis.getFile();
+        StringWriter bodyContent = new StringWriter();
+        extractTextWithTika(tis, metadata, bodyContent);
+
+        String text = extractTextFromHtml(FileUtils.readFileToString(htmlFile, "UTF-8"));
+        if (text == null || text.length() == 0) {
+            text = TextNormalizingWriter.normalize(bodyContent.toString());
+        } else {
+            text = Normalizer.normalize(text, Normalizer.Form.NFC);
+        }
+        out.write(text);
     }
 
-    private static String extractTextWithTika(byte[] textBytes, Metadata metadata) throws TikaException, SAXException, IOException {
-        TikaConfig tikaConfig = TikaConfig.getDefaultConfig();
-        CompositeParser compositeParser = new CompositeParser(tikaConfig.getMediaTypeRegistry(), tikaConfig.getParser());
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        OutputStreamWriter writer = new OutputStreamWriter(output, "UTF-8");
-        ContentHandler handler = new BodyContentHandler(writer);
-        ParseContext context = new ParseContext();
-        context.set(PDFParserConfig.class, new BcParserConfig());
-        ByteArrayInputStream stream = new ByteArrayInputStream(textBytes);
+    private void extractTextWithTika(TikaInputStream tis, Metadata metadata, Writer output) throws TikaException, SAXException, IOException {
+        ContentHandler handler = new BodyContentHandler(output);
+        ParseContext context = parseContext.get();
 
-        TemporaryResources tmp = new TemporaryResources();
+        // TIKA-216: Zip bomb prevention
+        SecureContentHandler sch = new SecureContentHandler(handler, tis);
         try {
-            TikaInputStream tis = TikaInputStream.get(stream, tmp);
-
-            // TIKA-216: Zip bomb prevention
-            SecureContentHandler sch = new SecureContentHandler(handler, tis);
-            try {
+            if (forkedParser != null) {
+                forkedParser.parse(tis, sch, metadata, context);
+            } else {
                 compositeParser.parse(tis, sch, metadata, context);
-            } catch (SAXException e) {
-                // Convert zip bomb exceptions to TikaExceptions
-                sch.throwIfCauseOf(e);
-                throw e;
             }
-        } finally {
-            tmp.dispose();
+        } catch (SAXException e) {
+            // Convert zip bomb exceptions to TikaExceptions
+            sch.throwIfCauseOf(e);
+            throw e;
         }
 
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("extracted %d bytes", output.size());
             LOGGER.debug("metadata");
             for (String metadataName : metadata.names()) {
                 LOGGER.debug("  %s: %s", metadataName, metadata.get(metadataName));
             }
         }
-        return IOUtils.toString(output.toByteArray(), "UTF-8");
     }
 
     private String extractTextFromHtml(String text) throws BoilerpipeProcessingException {
@@ -364,18 +469,36 @@ public class TikaTextExtractorWorker extends DataWorker {
         return null;
     }
 
-    private String cleanHtml(String text) {
-        text = text.replaceAll("&mdash;", "--");
-        text = text.replaceAll("&ldquo;", "\"");
-        text = text.replaceAll("&rdquo;", "\"");
-        text = text.replaceAll("&lsquo;", "'");
-        text = text.replaceAll("&rsquo;", "'");
-        return text;
+    static String cleanHtml(String text) {
+        int amp = text.indexOf('&');
+        if (amp < 0) {
+            return text;
+        }
+
+        StringBuilder result = new StringBuilder(text.length());
+        int last = 0;
+        while (amp >= 0) {
+            String replacement = null;
+            int length = 0;
+            for (int i = 0; i < HTML_ENTITIES.length; i += 2) {
+                if (text.startsWith(HTML_ENTITIES[i], amp)) {
+                    replacement = HTML_ENTITIES[i + 1];
+                    length = HTML_ENTITIES[i].length();
+                    break;
+                }
+            }
+            if (replacement != null) {
+                result.append(text, last, amp).append(replacement);
+                last = amp + length;
+            }
+            amp = text.indexOf('&', amp + 1);
+        }
+        return result.append(text, last, text.length()).toString();
     }
 
-    private ZonedDateTime extractDate(Metadata metadata) {
+    private ZonedDateTime extractDate(TikaMetadataUtils.Index metadata) {
         // find the date metadata property, if there is one
-        String dateKey = TikaMetadataUtils.findKey(dateKeys, metadata);
+        String dateKey = metadata.findKey(dateKeys);
         ZonedDateTime date = null;
         if (dateKey != null) {
             date = GenericDateExtractor
@@ -389,10 +512,10 @@ public class TikaTextExtractorWorker extends DataWorker {
         return date;
     }
 
-    private String extractTextField(Metadata metadata, List<String> keys) {
+    private String extractTextField(TikaMetadataUtils.Index metadata, List<String> keys) {
         // find the title metadata property, if there is one
         String field = "";
-        String fieldKey = TikaMetadataUtils.findKey(keys, metadata);
+        String fieldKey = metadata.findKey(keys);
 
         if (fieldKey != null) {
             field = metadata.get(fieldKey);
@@ -408,20 +531,8 @@ public class TikaTextExtractorWorker extends DataWorker {
         return mimeType.contains("html");
     }
 
-    private String cleanExtractedText(String extractedText) {
-        return extractedText
-                // Normalize line breaks
-                .replaceAll("\r", "\n")
-                // Remove tabs
-                .replaceAll("\t", " ")
-                // Remove non-breaking spaces
-                .replaceAll("\u00A0", " ")
-                // Remove newlines that are just paragraph wrapping
-                .replaceAll("(?<![\\n])[\\n](?![\\n])", " ")
-                // Remove remaining newlines with exactly 2
-                .replaceAll("([ ]*\\n[ ]*)+", "\n\n")
-                // Remove duplicate spaces
-                .replaceAll("[ ]+", " ");
+    private boolean isPdf(String mimeType) {
+        return mimeType.contains("pdf");
     }
 
     @Override
@@ -0,0 +1,199 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.extractor;
+
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.AbstractParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.junit.After;
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ForkedTikaParserTest {
+    private static final String JAVA = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    private static final String HEARTBEAT_FILE = "heartbeatFile";
+
+    private ForkedTikaParser forkedParser;
+
+    @After
+    public void tearDown() {
+        if (forkedParser != null) {
+            forkedParser.close();
+        }
+    }
+
+    @Test
+    public void testTextAndMetadataComeBackFromTheChild() throws Exception {
+        forkedParser = new ForkedTikaParser(new TitleParser(), 1, JAVA, "64m", 60000);
+
+        for (int i = 0; i < 2; i++) {
+            BodyContentHandler body = new BodyContentHandler();
+            Metadata metadata = new Metadata();
+            metadata.set(Metadata.CONTENT_TYPE, "text/plain");
+            forkedParser.parse(new ByteArrayInputStream("body text".getBytes(StandardCharsets.UTF_8)), body, metadata, new ParseContext());
+
+            assertEquals("body text", body.toString().trim());
+            assertEquals("A title", metadata.get("title"));
+            assertEquals("12", metadata.get("xmpTPg:NPages"));
+            assertArrayEquals(new String[]{"Alice", "Bob"}, metadata.getValues("author"));
+            assertArrayEquals(new String[]{"text/plain; charset=UTF-8"}, metadata.getValues(Metadata.CONTENT_TYPE));
+        }
+    }
+
+    @Test
+    public void testTimeoutKillsTheChildAndDetachesTheHandler() throws Exception {
+        forkedParser = new ForkedTikaParser(new HangingParser(), 1, JAVA, "64m", 2000);
+        File heartbeat = File.createTempFile("heartbeat-", ".txt");
+        try {
+            AtomicInteger events = new AtomicInteger();
+            ContentHandler handler = new DefaultHandler() {
+                @Override
+                public void characters(char[] ch, int start, int length) {
+                    events.incrementAndGet();
+                }
+            };
+            Metadata metadata = new Metadata();
+            metadata.set(HEARTBEAT_FILE, heartbeat.getAbsolutePath());
+
+            long start = System.currentTimeMillis();
+            try {
+                forkedParser.parse(new ByteArrayInputStream(new byte[1]), handler, metadata, new ParseContext());
+                fail("the hanging parse should time out");
+            } catch (TikaException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("timed out"));
+            }
+            assertTrue(System.currentTimeMillis() - start < 30000);
+            int eventsAtTimeout = events.get();
+            assertTrue(eventsAtTimeout > 0);
+
+            // a live child would keep writing its heartbeat and sending events
+            Thread.sleep(500);
+            String beat = new String(Files.readAllBytes(heartbeat.toPath()), StandardCharsets.UTF_8);
+            Thread.sleep(1000);
+            assertEquals(beat, new String(Files.readAllBytes(heartbeat.toPath()), StandardCharsets.UTF_8));
+            assertEquals(eventsAtTimeout, events.get());
+        } finally {
+            heartbeat.delete();
+        }
+
+        // the killed child is replaced by a fresh one
+        forkedParser.close();
+        forkedParser = new ForkedTikaParser(new TitleParser(), 1, JAVA, "64m", 60000);
+        BodyContentHandler body = new BodyContentHandler();
+        forkedParser.parse(new ByteArrayInputStream(new byte[0]), body, new Metadata(), new ParseContext());
+        assertEquals("body text", body.toString().trim());
+    }
+
+    @Test
+    public void testChildErrorsAreReported() throws Exception {
+        forkedParser = new ForkedTikaParser(new FailingParser(), 1, JAVA, "64m", 60000);
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                forkedParser.parse(new ByteArrayInputStream(new byte[0]), new BodyContentHandler(), new Metadata(), new ParseContext());
+                fail("the failing parse should be reported");
+            } catch (TikaException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("broken document"));
+            }
+        }
+    }
+
+    private abstract static class TestParser extends AbstractParser {
+        @Override
+        public Set<MediaType> getSupportedTypes(ParseContext context) {
+            return Collections.singleton(MediaType.TEXT_PLAIN);
+        }
+    }
+
+    private static class TitleParser extends TestParser {
+        @Override
+        public void parse(InputStream stream, ContentHandler handler, Metadata metadata, ParseContext context) throws SAXException {
+            metadata.set(Metadata.CONTENT_TYPE, "text/plain; charset=UTF-8");
+            metadata.set("title", "A title");
+            metadata.set("xmpTPg:NPages", "12");
+            metadata.add("author", "Alice");
+            metadata.add("author", "Bob");
+            XHTMLContentHandler xhtml = new XHTMLContentHandler(handler, metadata);
+            xhtml.startDocument();
+            xhtml.element("p", "body text");
+            xhtml.endDocument();
+        }
+    }
+
+    private static class HangingParser extends TestParser {
+        @Override
+        public void parse(InputStream stream, ContentHandler handler, Metadata metadata, ParseContext context) throws IOException, SAXException {
+            File heartbeat = new File(metadata.get(HEARTBEAT_FILE));
+            // big enough to get the event stream flushed to the parent on every beat
+            char[] text = new char[16 * 1024];
+            for (long beat = 0; ; beat++) {
+                Files.write(heartbeat.toPath(), Long.toString(beat).getBytes(StandardCharsets.UTF_8));
+                handler.characters(text, 0, text.length);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class FailingParser extends TestParser {
+        @Override
+        public void parse(InputStream stream, ContentHandler handler, Metadata metadata, ParseContext context) throws TikaException {
+            throw new TikaException("broken document");
+        }
+    }
+}
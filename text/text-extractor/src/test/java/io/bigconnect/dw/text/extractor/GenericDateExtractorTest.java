@@ -0,0 +1,91 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.extractor;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GenericDateExtractorTest {
+    private static final Instant EXPECTED = Instant.parse("2016-03-04T08:11:12Z");
+
+    @Test
+    public void testZonedFormats() {
+        assertInstant("2016-03-04T08:11:12Z");
+        assertInstant("2016-03-04T10:11:12+02:00");
+        assertInstant("2016-03-04T10:11:12+0200");
+        assertInstant("2016-03-04T10:11:12+02");
+        assertInstant("2016-03-04T00:11:12PST");
+        assertInstant("Fri Mar 04 10:11:12 EET 2016");
+    }
+
+    @Test
+    public void testPdfDateUsesSystemZone() {
+        Instant local = LocalDateTime.parse("2016-03-04T10:11:12").atZone(ZoneId.systemDefault()).toInstant();
+        assertEquals(local, GenericDateExtractor.extractSingleDate("D:20160304101112").toInstant());
+        assertEquals(local, GenericDateExtractor.extractSingleDate("D:20160304101112+02'00'").toInstant());
+    }
+
+    @Test
+    public void testRepeatedParsesReorderFormats() {
+        for (int i = 0; i < 100; i++) {
+            assertInstant("Fri Mar 04 10:11:12 EET 2016");
+            assertInstant("2016-03-04T08:11:12Z");
+        }
+    }
+
+    @Test
+    public void testInvalidDates() {
+        assertNull(GenericDateExtractor.extractSingleDate(null));
+        assertNull(GenericDateExtractor.extractSingleDate(""));
+        assertNull(GenericDateExtractor.extractSingleDate("not a date"));
+        assertNull(GenericDateExtractor.extractSingleDate("2016-13-04T10:11:12Z"));
+        assertNull(GenericDateExtractor.extractSingleDate("2016-03-04T10:11:12"));
+    }
+
+    private static void assertInstant(String date) {
+        ZonedDateTime result = GenericDateExtractor.extractSingleDate(date);
+        assertEquals(date, EXPECTED, result.toInstant());
+        assertEquals(date, ZoneId.systemDefault(), result.getZone());
+    }
+}
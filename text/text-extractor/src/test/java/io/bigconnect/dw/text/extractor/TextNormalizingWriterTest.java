@@ -0,0 +1,134 @@
+/*
+ * This file is part of the BigConnect project.
+ *
+ * Copyright (c) 2013-2020 MWARE SOLUTIONS SRL
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * MWARE SOLUTIONS SRL, MWARE SOLUTIONS SRL DISCLAIMS THE WARRANTY OF
+ * NON INFRINGEMENT OF THIRD PARTY RIGHTS
+
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, see http://www.gnu.org/licenses or write to
+ * the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+ * Boston, MA, 02110-1301 USA, or download the license from the following URL:
+ * https://www.gnu.org/licenses/agpl-3.0.txt
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the BigConnect software without
+ * disclosing the source code of your own applications.
+ *
+ * These activities include: offering paid services to customers as an ASP,
+ * embedding the product in a web application, shipping BigConnect with a
+ * closed source product.
+ */
+package io.bigconnect.dw.text.extractor;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.text.Normalizer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TextNormalizingWriterTest {
+    private static final String[] CORPUS = {
+            "",
+            "plain text",
+            "line one\nline two",
+            "paragraph one\n\nparagraph two",
+            "windows\r\nline\r\n\r\nbreaks",
+            "old mac\rline breaks\r\r",
+            "tabs\tand\u00A0non-breaking\u00A0\u00A0spaces",
+            "  leading and trailing  ",
+            "\n\nstarts with breaks",
+            "ends with a break\n",
+            "spaces \n \n around  \n\n\n  breaks",
+            "many     spaces    here",
+            "cafe\u0301 and e\u0301\u0327 need composing",
+            "combining after break\n\u0301x",
+            "\u00A0\n\t\r \n",
+    };
+
+    private static final char[] ALPHABET = {'a', 'b', ' ', '\n', '\r', '\t', '\u00A0', 'e', '\u0301', '\u0327'};
+
+    @Test
+    public void testCorpus() throws Exception {
+        for (String text : CORPUS) {
+            assertEquals(text, legacyClean(text), TextNormalizingWriter.normalize(text));
+            assertEquals(text, legacyClean(text), writeInPieces(text, 3));
+        }
+    }
+
+    @Test
+    public void testRandomText() throws Exception {
+        Random random = new Random(42);
+        for (int n = 0; n < 20000; n++) {
+            int length = random.nextInt(n % 100 == 0 ? 20000 : 40);
+            StringBuilder text = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                text.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            String s = text.toString();
+            assertEquals(legacyClean(s), TextNormalizingWriter.normalize(s));
+            assertEquals(legacyClean(s), writeInPieces(s, 1 + random.nextInt(7)));
+        }
+    }
+
+    @Test
+    public void testCleanHtml() {
+        String[] corpus = {
+                "no entities",
+                "&mdash;&ldquo;quoted&rdquo; &lsquo;single&rsquo;&mdash;",
+                "&amp; &mdash &mdash;; &&mdash;",
+                "&rsquo",
+        };
+        for (String html : corpus) {
+            assertEquals(html, legacyCleanHtml(html), TikaTextExtractorWorker.cleanHtml(html));
+        }
+    }
+
+    private static String writeInPieces(String text, int pieceLength) throws Exception {
+        StringWriter out = new StringWriter();
+        TextNormalizingWriter writer = new TextNormalizingWriter(out);
+        for (int i = 0; i < text.length(); i += pieceLength) {
+            writer.write(text, i, Math.min(pieceLength, text.length() - i));
+        }
+        writer.close();
+        return out.toString();
+    }
+
+    // the replaceAll chain TextNormalizingWriter replaced
+    private static String legacyClean(String text) {
+        String cleaned = text
+                .replaceAll("\r", "\n")
+                .replaceAll("\t", " ")
+                .replaceAll("\u00A0", " ")
+                .replaceAll("(?<![\\n])[\\n](?![\\n])", " ")
+                .replaceAll("([ ]*\\n[ ]*)+", "\n\n")
+                .replaceAll("[ ]+", " ");
+        return Normalizer.normalize(cleaned, Normalizer.Form.NFC);
+    }
+
+    private static String legacyCleanHtml(String text) {
+        text = text.replaceAll("&mdash;", "--");
+        text = text.replaceAll("&ldquo;", "\"");
+        text = text.replaceAll("&rdquo;", "\"");
+        text = text.replaceAll("&lsquo;", "'");
+        text = text.replaceAll("&rsquo;", "'");
+        return text;
+    }
+}
@@ -37,8 +37,15 @@
 package io.bigconnect.dw.video.frame;
 
 import com.google.common.io.Files;
-import com.google.inject.Inject;
 import com.mware.bigconnect.ffmpeg.ArtifactThumbnailRepositoryProps;
+import com.mware.bigconnect.ffmpeg.FFmpegInput;
+import com.mware.bigconnect.ffmpeg.FrameSampling;
+import com.mware.bigconnect.ffmpeg.MediaProbeCache;
+import com.mware.bigconnect.ffmpeg.MediaProbeResult;
+import com.mware.bigconnect.ffmpeg.RawVideoFrameReader;
+import com.mware.bigconnect.ffmpeg.SinglePassOutputs;
+import com.mware.bigconnect.ffmpeg.VideoPreviewComposer;
+import com.mware.bigconnect.ffmpeg.VideoProcessingPipeline;
 import com.mware.core.ingest.dataworker.DataWorker;
 import com.mware.core.ingest.dataworker.DataWorkerData;
 import com.mware.core.ingest.dataworker.DataWorkerPrepareData;
@@ -48,42 +55,56 @@ import com.mware.core.model.Description;
 import com.mware.core.model.Name;
 import com.mware.core.model.properties.BcSchema;
 import com.mware.core.model.properties.MediaBcSchema;
+import com.mware.core.model.properties.types.BcPropertyUpdate;
 import com.mware.core.model.properties.types.DoubleBcProperty;
 import com.mware.core.security.BcVisibility;
 import com.mware.core.util.BcLogger;
 import com.mware.core.util.BcLoggerFactory;
-import com.mware.core.util.ProcessRunner;
 import com.mware.ge.*;
+import com.mware.ge.collection.Pair;
 import com.mware.ge.mutation.ExistingElementMutation;
-import com.mware.ge.util.StreamUtils;
 import com.mware.ge.values.storable.*;
 import org.apache.commons.io.FileUtils;
 
 import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-
-import static com.google.common.base.Preconditions.checkNotNull;
-import static com.mware.ge.util.IterableUtils.toList;
 
+/**
+ * With {@link #CONFIG_SINGLE_PASS} the poster frame, the preview image and the MP3 are produced in the same decode
+ * as the frames. VideoPreviewWorker and VideoAudioExtractorWorker only skip a video once those are saved, so this
+ * worker has to be listed before them in the data worker configuration; otherwise they still work, but decode the
+ * video again.
+ */
 @Name("Video Frame Extract")
 @Description("Extracts frames of the video for image processing")
 public class VideoFrameExtractorWorker extends DataWorker {
     private static final BcLogger LOGGER = BcLoggerFactory.getLogger(VideoFrameExtractorWorker.class);
-    private ProcessRunner processRunner;
+    public static final String CONFIG_SINGLE_PASS = "video.frame-extractor.single-pass";
+    public static final String CONFIG_SAMPLING = "video.frame-extractor.sampling";
+    public static final String CONFIG_SCENE_THRESHOLD = "video.frame-extractor.scene-threshold";
+    public static final String CONFIG_MAX_FRAMES = "video.frame-extractor.max-frames";
+    public static final String CONFIG_MAX_FRAME_WIDTH = "video.frame-extractor.max-frame-width";
+    private static final String AUDIO_PROPERTY_KEY = "";
     private DoubleBcProperty videoDurationProperty;
+    private boolean singlePass;
+    private FrameSampling.Mode samplingMode;
+    private double sceneThreshold;
+    private int maxFrames;
+    private int maxFrameWidth;
 
     @Override
     public void prepare(DataWorkerPrepareData workerPrepareData) throws Exception {
         super.prepare(workerPrepareData);
         getGraphAuthorizationRepository().addAuthorizationToGraph(VideoFrameInfo.VISIBILITY_STRING);
         videoDurationProperty = new DoubleBcProperty(getSchemaRepository().getRequiredPropertyNameByIntent("media.duration"));
+        singlePass = getConfiguration().getBoolean(CONFIG_SINGLE_PASS, false);
+        samplingMode = FrameSampling.Mode.valueOf(getConfiguration().get(CONFIG_SAMPLING, FrameSampling.Mode.FIXED.name()).toUpperCase());
+        sceneThreshold = Double.parseDouble(getConfiguration().get(CONFIG_SCENE_THRESHOLD, "0.3"));
+        maxFrames = getConfiguration().getInt(CONFIG_MAX_FRAMES, 0);
+        maxFrameWidth = getConfiguration().getInt(CONFIG_MAX_FRAME_WIDTH, 1920);
     }
 
     @Override
@@ -91,45 +112,35 @@ public class VideoFrameExtractorWorker extends DataWorker {
         Double videoDuration = videoDurationProperty.getOnlyPropertyValue(data.getElement());
         Visibility newVisibility = new BcVisibility(BcVisibility.and(getVisibilityTranslator().toVisibilityNoSuperUser(data.getVisibilityJson()), VideoFrameInfo.VISIBILITY_STRING)).getVisibility();
 
-        Pattern fileNamePattern = Pattern.compile("image-([0-9]+)\\.png");
         File tempDir = Files.createTempDir();
         try {
             Double defaultFPSToExtract = 1.0;
             if (videoDuration != null && videoDuration <= ArtifactThumbnailRepositoryProps.FRAMES_PER_PREVIEW) {
                 defaultFPSToExtract = (double)ArtifactThumbnailRepositoryProps.FRAMES_PER_PREVIEW / videoDuration;
             }
-            extractFrames(data.getLocalFile(), tempDir, defaultFPSToExtract);
-
+            FrameSampling sampling = getFrameSampling(defaultFPSToExtract, videoDuration);
             ExistingElementMutation<Vertex> mutation = refresh(data.getElement()).prepareMutation();
 
             List<String> propertyKeys = new ArrayList<>();
-            for (File frameFile : tempDir.listFiles()) {
-                Matcher m = fileNamePattern.matcher(frameFile.getName());
-                if (!m.matches()) {
-                    continue;
-                }
-                long frameStartTime = (long) ((Double.parseDouble(m.group(1)) / defaultFPSToExtract) * 1000.0);
-
-                try (InputStream frameFileIn = new FileInputStream(frameFile)) {
-                    StreamingPropertyValue frameValue = new DefaultStreamingPropertyValue(frameFileIn, ByteArray.class);
-                    frameValue.searchIndex(false);
-                    String key = String.format("%08d", Math.max(0L, frameStartTime));
-
-                    Metadata metadata = data.createPropertyMetadata(getUser());
-                    metadata.add(BcSchema.MIME_TYPE.getPropertyName(), Values.stringValue("image/png"), getVisibilityTranslator().getDefaultVisibility());
-                    metadata.add(MediaBcSchema.METADATA_VIDEO_FRAME_START_TIME, Values.longValue(frameStartTime), getVisibilityTranslator().getDefaultVisibility());
-
-                    MediaBcSchema.VIDEO_FRAME.addPropertyValue(mutation, key, frameValue, metadata, newVisibility);
-                    propertyKeys.add(key);
-                }
+            List<BcPropertyUpdate> changedProperties = new ArrayList<>();
+            File audioFile = null;
+            if (singlePass) {
+                audioFile = processInSinglePass(data, tempDir, sampling, newVisibility, mutation, propertyKeys, changedProperties);
+            } else {
+                extractFrames(data, tempDir, sampling, newVisibility, mutation, propertyKeys);
             }
 
-            generateAndSaveVideoPreviewImage(data, mutation);
-
             getGraph().flush();
 
             Element e = mutation.save(getAuthorizations());
 
+            if (!changedProperties.isEmpty()) {
+                getWebQueueRepository().broadcastPropertiesChange(e, changedProperties, null, data.getPriority());
+            }
+            if (audioFile != null) {
+                saveAudio(data, audioFile);
+            }
+
             for (String propertyKey : propertyKeys) {
                 if (getWebQueueRepository().shouldBroadcastGraphPropertyChange(MediaBcSchema.VIDEO_FRAME.getPropertyName(), data.getPriority())) {
                     getWebQueueRepository().broadcastPropertyChange(e, propertyKey, MediaBcSchema.VIDEO_FRAME.getPropertyName(), null);
@@ -151,146 +162,208 @@ public class VideoFrameExtractorWorker extends DataWorker {
         }
     }
 
-    private void extractFrames(File videoFileName, File outDir, double framesPerSecondToExtract) throws IOException, InterruptedException {
-        String[] ffmpegOptionsArray = prepareFFMPEGOptions(videoFileName, outDir, framesPerSecondToExtract);
-        processRunner.execute(
-                "ffmpeg",
-                ffmpegOptionsArray,
-                null,
-                videoFileName.getAbsolutePath() + ": "
-        );
+    private String addFrame(DataWorkerData data, ExistingElementMutation<Vertex> mutation, File frameFile, long frameStartTime, Visibility visibility) throws IOException {
+        try (InputStream frameFileIn = new FileInputStream(frameFile)) {
+            return addFrame(data, mutation, frameFileIn, frameStartTime, visibility);
+        }
     }
 
-    private String[] prepareFFMPEGOptions(File videoFileName, File outDir, double framesPerSecondToExtract) {
+    private String addFrame(DataWorkerData data, ExistingElementMutation<Vertex> mutation, InputStream frameIn, long frameStartTime, Visibility visibility) {
+        StreamingPropertyValue frameValue = new DefaultStreamingPropertyValue(frameIn, ByteArray.class);
+        frameValue.searchIndex(false);
+        String key = String.format("%08d", Math.max(0L, frameStartTime));
 
-        ArrayList<String> ffmpegOptionsList = new ArrayList<>();
-        ffmpegOptionsList.add("-i");
-        ffmpegOptionsList.add(videoFileName.getAbsolutePath());
-        ffmpegOptionsList.add("-r");
-        ffmpegOptionsList.add("" + framesPerSecondToExtract);
+        Metadata metadata = data.createPropertyMetadata(getUser());
+        metadata.add(BcSchema.MIME_TYPE.getPropertyName(), Values.stringValue("image/png"), getVisibilityTranslator().getDefaultVisibility());
+        metadata.add(MediaBcSchema.METADATA_VIDEO_FRAME_START_TIME, Values.longValue(frameStartTime), getVisibilityTranslator().getDefaultVisibility());
 
-        ffmpegOptionsList.add(new File(outDir, "image-%8d.png").getAbsolutePath());
-        return ffmpegOptionsList.toArray(new String[ffmpegOptionsList.size()]);
+        MediaBcSchema.VIDEO_FRAME.addPropertyValue(mutation, key, frameValue, metadata, visibility);
+        return key;
     }
 
-    @Override
-    public boolean isHandled(Element element, Property property) {
-        if (property == null) {
-            return false;
+    /**
+     * Reads the sampled frames straight from ffmpeg and composes the preview image from the same decoded frames.
+     * Each frame is encoded once into a PNG file in tempDir, so the frames don't pile up on the heap until the
+     * mutation is saved. With a frame budget, the files of the frames the budget drops are deleted right away.
+     */
+    private void extractFrames(
+            DataWorkerData data,
+            File tempDir,
+            FrameSampling sampling,
+            Visibility visibility,
+            ExistingElementMutation<Vertex> mutation,
+            List<String> propertyKeys
+    ) throws IOException {
+        FFmpegInput videoFile = FFmpegInput.of(data.getLocalFile().toPath());
+        MediaProbeResult probeResult = probe(data, videoFile, mutation);
+
+        RawVideoFrameReader reader = new RawVideoFrameReader(videoFile, probeResult, sampling)
+                .withMaxWidth(maxFrameWidth);
+        VideoPreviewComposer preview = new VideoPreviewComposer(reader.getWidth(), reader.getHeight());
+        FrameSampling.SpreadBuffer<Pair<Long, File>> budget = maxFrames > 0 ? new FrameSampling.SpreadBuffer<>(maxFrames) : null;
+        reader.read((startTime, frame) -> {
+            preview.add(frame);
+            File frameFile = File.createTempFile("frame-", ".png", tempDir);
+            ImageIO.write(frame, "png", frameFile);
+            if (budget == null) {
+                propertyKeys.add(addFrame(data, mutation, frameFile, startTime, visibility));
+            } else {
+                budget.add(Pair.of(startTime, frameFile), dropped -> FileUtils.deleteQuietly(dropped.other()));
+            }
+        });
+        if (budget != null) {
+            for (Pair<Long, File> frame : budget.getItems()) {
+                propertyKeys.add(addFrame(data, mutation, frame.other(), frame.first(), visibility));
+            }
         }
 
-        if (!property.getName().equals(BcSchema.RAW.getPropertyName())) {
-            return false;
+        LOGGER.info("Generating video preview for %s", mutation.getElement().getId());
+        BufferedImage previewImage = preview.compose();
+        if (previewImage != null) {
+            saveImage(data, mutation, previewImage);
         }
-        String mimeType = BcSchema.MIME_TYPE_METADATA.getMetadataValue(property.getMetadata(), null);
-        if (mimeType == null || !mimeType.startsWith("video")) {
-            return false;
+    }
+
+    /**
+     * Decodes the video once to get the frames, the preview image, the poster frame and, unless it is already
+     * there, the MP3 audio track. The preview image and the poster frame are marked as made from the current RAW
+     * property, see {@link SinglePassOutputs}.
+     *
+     * @return the extracted MP3 file, or null
+     */
+    private File processInSinglePass(
+            DataWorkerData data,
+            File tempDir,
+            FrameSampling sampling,
+            Visibility frameVisibility,
+            ExistingElementMutation<Vertex> mutation,
+            List<String> propertyKeys,
+            List<BcPropertyUpdate> changedProperties
+    ) throws IOException {
+        Vertex element = mutation.getElement();
+        File videoFile = data.getLocalFile();
+        MediaProbeResult probeResult = probe(data, FFmpegInput.of(videoFile.toPath()), mutation);
+
+        VideoProcessingPipeline pipeline = new VideoProcessingPipeline(videoFile.toPath(), probeResult.getProbeResult())
+                .withFrames(sampling)
+                .withPreviewImage()
+                .withPosterFrame();
+        if (!MediaBcSchema.AUDIO_MP3.hasProperty(element)) {
+            pipeline.withAudio();
         }
+        VideoProcessingPipeline.Result result = pipeline.run(tempDir);
 
-        return true;
-    }
+        for (Pair<Long, File> frame : FrameSampling.spread(result.getFrames(), maxFrames)) {
+            propertyKeys.add(addFrame(data, mutation, frame.other(), frame.first(), frameVisibility));
+        }
 
-    private void generateAndSaveVideoPreviewImage(DataWorkerData data, ExistingElementMutation<Vertex> artifactVertex) {
-        LOGGER.info("Generating video preview for %s", artifactVertex.getElement().getId());
+        Visibility visibility = data.getProperty().getVisibility();
+        if (result.getPreviewImage() != null) {
+            Metadata metadata = data.createPropertyMetadata(getUser());
+            SinglePassOutputs.mark(metadata, data.getProperty(), getVisibilityTranslator().getDefaultVisibility());
+            MediaBcSchema.VIDEO_PREVIEW_IMAGE.updateProperty(changedProperties, element, mutation,
+                    toStreamingPropertyValue(result.getPreviewImage()), metadata, visibility);
+        }
 
-        try {
-            Iterable<Property> videoFrames = getVideoFrameProperties(artifactVertex);
-            List<Property> videoFramesForPreview = getFramesForPreview(videoFrames);
-            BufferedImage previewImage = createPreviewImage(videoFramesForPreview);
-            saveImage(data, artifactVertex, previewImage);
-        } catch (IOException e) {
-            throw new RuntimeException("Could not create preview image for artifact: " + artifactVertex.getElement().getId(), e);
+        if (result.getPosterFrame() != null) {
+            Metadata metadata = data.createPropertyMetadata(getUser());
+            metadata.add(BcSchema.MIME_TYPE.getPropertyName(), Values.stringValue("image/png"), getVisibilityTranslator().getDefaultVisibility());
+            SinglePassOutputs.mark(metadata, data.getProperty(), getVisibilityTranslator().getDefaultVisibility());
+            MediaBcSchema.RAW_POSTER_FRAME.updateProperty(changedProperties, element, mutation, SinglePassOutputs.POSTER_FRAME_KEY,
+                    toStreamingPropertyValue(result.getPosterFrame()), metadata, visibility);
         }
 
-        LOGGER.debug("Finished creating preview for: %s", artifactVertex.getElement().getId());
+        return result.getAudio();
     }
 
-    private void saveImage(DataWorkerData data, ExistingElementMutation<Vertex> artifactVertex, BufferedImage previewImage) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ImageIO.write(previewImage, "png", out);
-        StreamingPropertyValue spv = new DefaultStreamingPropertyValue(new ByteArrayInputStream(out.toByteArray()), ByteArray.class);
-        spv.searchIndex(false);
-        Metadata metadata = data.createPropertyMetadata(getUser());
-        MediaBcSchema.VIDEO_PREVIEW_IMAGE.setProperty(artifactVertex, spv, metadata, artifactVertex.getNewElementVisibility());
-        getGraph().flush();
+    private MediaProbeResult probe(DataWorkerData data, FFmpegInput videoFile, ExistingElementMutation<Vertex> mutation) throws IOException {
+        MediaProbeResult probeResult = MediaProbeCache.probe(data.getElement(), data.getProperty(), videoFile);
+        if (probeResult == null) {
+            throw new IOException("Could not probe video: " + videoFile);
+        }
+        MediaProbeCache.save(mutation, data.getElement(), data.getProperty(), probeResult, data.getProperty().getVisibility());
+        return probeResult;
     }
 
-    private BufferedImage createPreviewImage(List<Property> videoFrames) throws IOException {
-        int previewFrameWidth = ArtifactThumbnailRepositoryProps.PREVIEW_FRAME_HEIGHT;
-        int previewFrameHeight = ArtifactThumbnailRepositoryProps.PREVIEW_FRAME_WIDTH;
-
-        BufferedImage previewImage = null;
-        Graphics g = null;
-        for (int i = 0; i < videoFrames.size(); i++) {
-            Property videoFrame = videoFrames.get(i);
-            Image img = loadImage(videoFrame);
-            int widthImage = img.getWidth(null);
-            int heightImage = img.getHeight(null);
-            if (i == 0) {
-                float ratioImage = (float)widthImage / (float)heightImage;
-                float ratioContainer = (float)previewFrameWidth / (float)previewFrameHeight;
-                float calculatedWidth, calculatedHeight;
-                if (ratioContainer > ratioImage) {
-                    calculatedWidth = widthImage * ((float)previewFrameHeight / heightImage);
-                    calculatedHeight = (float)previewFrameHeight;
-                } else {
-                    calculatedWidth = (float)previewFrameWidth;
-                    calculatedHeight = heightImage * ((float)previewFrameWidth / widthImage);
-                }
-                previewFrameWidth = (int) calculatedWidth;
-                previewFrameHeight = (int) calculatedHeight;
-                previewImage = new BufferedImage(previewFrameWidth * videoFrames.size(), previewFrameHeight, BufferedImage.TYPE_INT_RGB);
-                g = previewImage.getGraphics();
+    // same as VideoAudioExtractorWorker, which skips videos that already have the MP3
+    private void saveAudio(DataWorkerData data, File mp3File) throws IOException {
+        ExistingElementMutation<Vertex> m = refresh(data.getElement()).prepareMutation();
+
+        try (InputStream mp3FileIn = new FileInputStream(mp3File)) {
+            StreamingPropertyValue spv = new DefaultStreamingPropertyValue(mp3FileIn, ByteArray.class);
+            spv.searchIndex(false);
+            Metadata metadata = data.createPropertyMetadata(getUser());
+            metadata.add(BcSchema.MIME_TYPE.getPropertyName(), Values.stringValue(MediaBcSchema.MIME_TYPE_AUDIO_MP3), getVisibilityTranslator().getDefaultVisibility());
+            MediaBcSchema.AUDIO_MP3.setProperty(m, spv, metadata, data.getProperty().getVisibility());
+            Element e = m.save(getAuthorizations());
+            getGraph().flush();
+
+            if (getWebQueueRepository().shouldBroadcast(data.getPriority())) {
+                getWebQueueRepository().broadcastPropertyChange(e, AUDIO_PROPERTY_KEY, MediaBcSchema.AUDIO_MP3.getPropertyName(), null);
             }
-            int dx1 = i * previewFrameWidth;
-            int dy1 = 0;
-            int dx2 = dx1 + previewFrameWidth;
-            int dy2 = previewFrameHeight;
-            int sx1 = 0;
-            int sy1 = 0;
-            g.drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, widthImage, heightImage, null);
+            getWorkQueueRepository().pushGraphPropertyQueue(
+                    e,
+                    AUDIO_PROPERTY_KEY,
+                    MediaBcSchema.AUDIO_MP3.getPropertyName(),
+                    null,
+                    null,
+                    data.getPriority(),
+                    ElementOrPropertyStatus.UPDATE,
+                    null
+            );
         }
-        return previewImage;
     }
 
-    private Image loadImage(Property videoFrame) throws IOException {
-        StreamingPropertyValue spv = (StreamingPropertyValue) videoFrame.getValue();
-        try (InputStream spvIn = spv.getInputStream()) {
-            BufferedImage img = ImageIO.read(spvIn);
-            checkNotNull(img, "Could not load image from frame: " + videoFrame);
-            return img;
-        }
+    private static StreamingPropertyValue toStreamingPropertyValue(File file) throws IOException {
+        byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
+        StreamingPropertyValue spv = new DefaultStreamingPropertyValue(new ByteArrayInputStream(bytes), ByteArray.class, (long) bytes.length);
+        spv.searchIndex(false);
+        return spv;
     }
 
-    private Iterable<Property> getVideoFrameProperties(ExistingElementMutation<Vertex> artifactVertex) {
-        return StreamUtils.stream(artifactVertex.getProperties())
-                .filter(p -> p.getName().equals(MediaBcSchema.VIDEO_FRAME.getPropertyName()))
-                .sorted((p1, p2) -> {
-                    LongValue p1StartTime = (LongValue) p1.getMetadata().getValue(MediaBcSchema.METADATA_VIDEO_FRAME_START_TIME);
-                    LongValue p2StartTime = (LongValue) p2.getMetadata().getValue(MediaBcSchema.METADATA_VIDEO_FRAME_START_TIME);
-                    return p1StartTime.compareTo(p2StartTime);
-                })
-                .collect(Collectors.toList());
+    /**
+     * With a frame budget, fixed-rate sampling is slowed down so that the budget covers the whole video.
+     * Keyframe and scene-change sampling produce an unknown number of frames, those are thinned out
+     * evenly after extraction.
+     */
+    private FrameSampling getFrameSampling(double framesPerSecondToExtract, Double videoDuration) {
+        switch (samplingMode) {
+            case KEYFRAME:
+                return FrameSampling.keyframes();
+            case SCENE_CHANGE:
+                return FrameSampling.sceneChanges(sceneThreshold);
+            default:
+                if (maxFrames > 0 && videoDuration != null && videoDuration > 0) {
+                    framesPerSecondToExtract = Math.min(framesPerSecondToExtract, maxFrames / videoDuration);
+                }
+                return FrameSampling.fixed(framesPerSecondToExtract);
+        }
     }
 
-    private List<Property> getFramesForPreview(Iterable<Property> videoFramesIterable) {
-        List<Property> videoFrames = toList(videoFramesIterable);
-        ArrayList<Property> results = new ArrayList<>();
-        double skip = (double) videoFrames.size() / (double) ArtifactThumbnailRepositoryProps.FRAMES_PER_PREVIEW;
-        for (double i = 0; i < videoFrames.size(); i += skip) {
-            results.add(videoFrames.get((int) Math.floor(i)));
+    @Override
+    public boolean isHandled(Element element, Property property) {
+        if (property == null) {
+            return false;
         }
-        if (results.size() < ArtifactThumbnailRepositoryProps.FRAMES_PER_PREVIEW) {
-            results.add(videoFrames.get(videoFrames.size() - 1));
+
+        if (!property.getName().equals(BcSchema.RAW.getPropertyName())) {
+            return false;
         }
-        if (results.size() > ArtifactThumbnailRepositoryProps.FRAMES_PER_PREVIEW) {
-            results.remove(results.size() - 1);
+        String mimeType = BcSchema.MIME_TYPE_METADATA.getMetadataValue(property.getMetadata(), null);
+        if (mimeType == null || !mimeType.startsWith("video")) {
+            return false;
         }
-        return results;
+
+        return true;
     }
 
-    @Inject
-    public void setProcessRunner(ProcessRunner processRunner) {
-        this.processRunner = processRunner;
+    private void saveImage(DataWorkerData data, ExistingElementMutation<Vertex> artifactVertex, BufferedImage previewImage) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(previewImage, "png", out);
+        StreamingPropertyValue spv = new DefaultStreamingPropertyValue(new ByteArrayInputStream(out.toByteArray()), ByteArray.class);
+        spv.searchIndex(false);
+        Metadata metadata = data.createPropertyMetadata(getUser());
+        MediaBcSchema.VIDEO_PREVIEW_IMAGE.setProperty(artifactVertex, spv, metadata, artifactVertex.getNewElementVisibility());
+        getGraph().flush();
     }
 }
@@ -38,11 +38,15 @@ package io.bigconnect.dw.video.metadata;
 
 import com.google.inject.Inject;
 import com.mware.bigconnect.ffmpeg.AVMediaInfo;
+import com.mware.bigconnect.ffmpeg.FFmpegInput;
+import com.mware.bigconnect.ffmpeg.MediaProbeCache;
+import com.mware.bigconnect.ffmpeg.MediaProbeResult;
 import com.mware.core.ingest.dataworker.DataWorkerData;
 import com.mware.core.ingest.dataworker.DataWorkerPrepareData;
 import com.mware.core.ingest.dataworker.PostMimeTypeWorker;
 import com.mware.core.model.Description;
 import com.mware.core.model.Name;
+import com.mware.core.model.properties.BcSchema;
 import com.mware.core.model.properties.MediaBcSchema;
 import com.mware.core.model.properties.types.*;
 import com.mware.core.model.schema.SchemaRepository;
@@ -50,10 +54,10 @@ import com.mware.core.util.FileSizeUtil;
 import com.mware.ge.Authorizations;
 import com.mware.ge.Element;
 import com.mware.ge.Metadata;
+import com.mware.ge.Property;
 import com.mware.ge.Vertex;
 import com.mware.ge.collection.Pair;
 import com.mware.ge.mutation.ExistingElementMutation;
-import net.bramp.ffmpeg.probe.FFmpegProbeResult;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -90,34 +94,36 @@ public class VideoMetadataPostMimeTypeWorker extends PostMimeTypeWorker {
             return;
         }
         File localFile = getLocalFileForRaw(data.getElement());
-        FFmpegProbeResult videoMetadata = AVMediaInfo.probe(localFile.getAbsolutePath());
+        Property raw = data.getElement().getProperty(BcSchema.RAW.getPropertyName());
+        MediaProbeResult videoMetadata = MediaProbeCache.probe(data.getElement(), raw, FFmpegInput.of(localFile.toPath()));
         ExistingElementMutation<Vertex> m = refresh(data.getElement(), authorizations).prepareMutation();
         List<BcPropertyUpdate> changedProperties = new ArrayList<>();
         Metadata metadata = data.createPropertyMetadata(getUser());
         if (videoMetadata != null) {
-            if (AVMediaInfo.hasVideoStream(videoMetadata)) {
+            if (videoMetadata.hasVideoStream()) {
                 MediaBcSchema.MEDIA_VIDEO_FORMAT.updateProperty(changedProperties, data.getElement(), m,
-                        AVMediaInfo.getVideoFormat(videoMetadata).name(), metadata, data.getVisibility());
+                        videoMetadata.getVideoFormat().name(), metadata, data.getVisibility());
                 MediaBcSchema.MEDIA_VIDEO_CODEC.updateProperty(changedProperties, data.getElement(), m,
-                        AVMediaInfo.getVideoCodec(videoMetadata).name(), metadata, data.getVisibility());
+                        videoMetadata.getVideoCodec().name(), metadata, data.getVisibility());
             }
 
-            if (AVMediaInfo.hasAudioStream(videoMetadata)) {
+            if (videoMetadata.hasAudioStream()) {
                 MediaBcSchema.MEDIA_AUDIO_FORMAT.updateProperty(changedProperties, data.getElement(), m,
-                        AVMediaInfo.getAudioFormat(videoMetadata).name(), metadata, data.getVisibility());
+                        videoMetadata.getAudioFormat().name(), metadata, data.getVisibility());
                 MediaBcSchema.MEDIA_AUDIO_CODEC.updateProperty(changedProperties, data.getElement(), m,
-                        AVMediaInfo.getAudioCodec(videoMetadata).name(), metadata, data.getVisibility());
+                        videoMetadata.getAudioCodec().name(), metadata, data.getVisibility());
             }
 
-            setProperty(duration, videoMetadata.format.duration, m, metadata, data, changedProperties);
-            setProperty(geoLocation, AVMediaInfo.getGeoPoint(videoMetadata), m, metadata, data, changedProperties);
-            setProperty(dateTaken, AVMediaInfo.getDateTaken(videoMetadata), m, metadata, data, changedProperties);
-            Pair<Integer, Integer> dimensions = AVMediaInfo.getDimensions(videoMetadata);
+            setProperty(duration, videoMetadata.getDuration(), m, metadata, data, changedProperties);
+            setProperty(geoLocation, AVMediaInfo.getGeoPoint(videoMetadata.getProbeResult()), m, metadata, data, changedProperties);
+            setProperty(dateTaken, AVMediaInfo.getDateTaken(videoMetadata.getProbeResult()), m, metadata, data, changedProperties);
+            Pair<Integer, Integer> dimensions = videoMetadata.getDimensions();
             if (dimensions != null) {
                 setProperty(width, dimensions.first(), m, metadata, data, changedProperties);
                 setProperty(height, dimensions.other(), m, metadata, data, changedProperties);
             }
             setProperty(this.mediaMetadata, videoMetadata.toString(), m, metadata, data, changedProperties);
+            MediaProbeCache.save(m, data.getElement(), raw, videoMetadata, data.getVisibility());
         }
 
         setProperty(fileSize, FileSizeUtil.getSize(localFile), m, metadata, data, changedProperties);
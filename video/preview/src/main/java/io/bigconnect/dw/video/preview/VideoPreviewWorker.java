@@ -38,6 +38,10 @@ package io.bigconnect.dw.video.preview;
 
 import com.google.inject.Inject;
 import com.mware.bigconnect.ffmpeg.AVUtils;
+import com.mware.bigconnect.ffmpeg.FFmpegInput;
+import com.mware.bigconnect.ffmpeg.MediaProbeCache;
+import com.mware.bigconnect.ffmpeg.MediaProbeResult;
+import com.mware.bigconnect.ffmpeg.SinglePassOutputs;
 import com.mware.bigconnect.ffmpeg.VideoFormat;
 import com.mware.core.ingest.dataworker.DataWorker;
 import com.mware.core.ingest.dataworker.DataWorkerData;
@@ -60,14 +64,10 @@ import com.mware.ge.values.storable.ByteArray;
 import com.mware.ge.values.storable.DefaultStreamingPropertyValue;
 import com.mware.ge.values.storable.StreamingPropertyValue;
 import com.mware.ge.values.storable.Values;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -89,16 +89,14 @@ public class VideoPreviewWorker extends DataWorker {
     public void execute(InputStream in, DataWorkerData data) {
         Vertex element = (Vertex) refresh(data.getElement());
 
-        Path videoFile = null;
+        StreamingPropertyValue raw = BcSchema.RAW.getPropertyValue(element);
+        if (raw == null)
+            return;
 
-        try {
-            StreamingPropertyValue raw = BcSchema.RAW.getPropertyValue(element);
-            if (raw == null)
-                return;
-
-            videoFile = Files.createTempFile("raw-", "");
-            IOUtils.copy(raw.getInputStream(), new FileOutputStream(videoFile.toFile()));
-            byte[] videoPosterFrame = AVUtils.createVideoPosterFrame(videoFile);
+        try (FFmpegInput videoFile = FFmpegInput.of(raw)) {
+            Property rawProperty = element.getProperty(BcSchema.RAW.getPropertyName());
+            MediaProbeResult probeResult = MediaProbeCache.probe(element, rawProperty, videoFile);
+            byte[] videoPosterFrame = AVUtils.createVideoPosterFrame(videoFile, probeResult);
             if (videoPosterFrame.length == 0) {
                 throw new RuntimeException("Poster frame not created.");
             }
@@ -111,7 +109,7 @@ public class VideoPreviewWorker extends DataWorker {
             metadata.add(BcSchema.MIME_TYPE.getPropertyName(), Values.stringValue("image/png"), getVisibilityTranslator().getDefaultVisibility());
             MediaBcSchema.RAW_POSTER_FRAME.updateProperty(changedProperties, element, m, PROPERTY_KEY, spv, metadata, data.getProperty().getVisibility());
 
-            BufferedImage videoPreviewImage = AVUtils.createVideoPreviewImage(videoFile);
+            BufferedImage videoPreviewImage = AVUtils.createVideoPreviewImage(videoFile, probeResult);
             if (videoPreviewImage != null) {
                 ByteArrayOutputStream out = new ByteArrayOutputStream();
                 ImageIO.write(videoPreviewImage, "png", out);
@@ -121,6 +119,7 @@ public class VideoPreviewWorker extends DataWorker {
                 MediaBcSchema.VIDEO_PREVIEW_IMAGE.updateProperty(changedProperties, element, m, spv, metadata, data.getProperty().getVisibility());
             }
 
+            MediaProbeCache.save(m, element, rawProperty, probeResult, rawProperty.getVisibility());
             Element e = m.save(getAuthorizations());
             getGraph().flush();
 
@@ -128,9 +127,6 @@ public class VideoPreviewWorker extends DataWorker {
 
         } catch (IOException ex){
             LOGGER.warn("Could not create video preview image!", ex);
-        } finally {
-            if (videoFile != null)
-                FileUtils.deleteQuietly(videoFile.toFile());
         }
     }
 
@@ -152,6 +148,11 @@ public class VideoPreviewWorker extends DataWorker {
             return false;
         }
 
+        // already produced from the current RAW by the single-pass frame extractor, which has to run first
+        if (SinglePassOutputs.hasPosterFrameAndPreviewImage(element)) {
+            return false;
+        }
+
         return true;
     }
 